@@ -1,16 +1,231 @@
+import java.util.Random;
+
+/**
+ * AI is the computer opponent. It picks moves with a {@link ParallelSearch},
+ * using a depth and time budget derived from the difficulty chosen in the
+ * menu and a configurable number of search threads. Hard mode evaluates
+ * with the neural network when one has been loaded with {@link #setNetwork}.
+ */
 public class AI {
+    private static NnueNetwork network; // Null for the classic evaluation only
+
     private String difficulty;
+    private ParallelSearch search = new ParallelSearch(1);
+    private PolyglotBook book; // Null to always search
+    private Tablebase tablebase; // Null for none
+    private SearchListener listener; // Null to print the search's progress
+    private final Random random = new Random(); // Varies book moves between games
 
     public AI(String difficulty) {
         this.difficulty = difficulty;
+        search.setListener(this::reportIteration);
+        search.setNetwork(usesNetwork() ? network : null);
+    }
+
+    /**
+     * Sets the network used by AIs created afterwards, or null for none.
+     */
+    public static void setNetwork(NnueNetwork network) {
+        AI.network = network;
+    }
+
+    public static NnueNetwork getNetwork() {
+        return network;
+    }
+
+    private boolean usesNetwork() {
+        return network != null && difficulty.equals("Hard");
+    }
+
+    /**
+     * Sets the number of search threads, keeping the transposition table.
+     */
+    public void setThreads(int threads) {
+        if (threads == search.getThreads())
+            return;
+        ParallelSearch replacement = new ParallelSearch(threads, search.getTranspositionTable());
+        replacement.setListener(this::reportIteration);
+        replacement.setNetwork(usesNetwork() ? network : null);
+        replacement.setTablebase(tablebase);
+        search.shutdown();
+        search = replacement;
+    }
+
+    public int getThreads() {
+        return search.getThreads();
     }
 
     public String getDifficulty() {
         return difficulty;
     }
 
-    public String makeMove(Board board) {
-        // Placeholder for AI logic
-        return "AI moves piece based on " + difficulty + " difficulty.";
+    /**
+     * Sets the opening book played from before searching, or null for none.
+     */
+    public void setBook(PolyglotBook book) {
+        this.book = book;
+    }
+
+    public PolyglotBook getBook() {
+        return book;
+    }
+
+    /**
+     * Sets the endgame tables used to play covered positions perfectly, at
+     * the root and inside the search, or null for none.
+     */
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+        search.setTablebase(tablebase);
+    }
+
+    public Tablebase getTablebase() {
+        return tablebase;
+    }
+
+    /**
+     * Sends the search's iteration reports to a listener instead of printing
+     * them, and stops printing book and tablebase moves. Null restores the
+     * printing.
+     */
+    public void setListener(SearchListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Chooses an encoded move for the side to move, or Moves.NONE if there is
+     * no legal move. The position is not modified, so this may run off the
+     * JavaFX thread on a copy of the board's position.
+     */
+    public int chooseMove(Position position) {
+        return chooseMove(position, getLimits());
+    }
+
+    /**
+     * Chooses a move while playing on a clock, given the time left and the
+     * increment for the side to move. The search budgets its time from these
+     * (see TimeManager); the difficulty still caps the depth.
+     */
+    public int chooseMove(Position position, long timeLeftMillis, long incrementMillis) {
+        return chooseMove(position, getLimits(position.getSideToMove(), timeLeftMillis, incrementMillis));
+    }
+
+    /**
+     * Chooses a move within the given limits rather than the difficulty's,
+     * e.g. those sent by a UCI graphical interface.
+     */
+    public int chooseMove(Position position, SearchLimits limits) {
+        int move = knownMove(position);
+        return move != Moves.NONE ? move : search.search(position, limits);
+    }
+
+    // A book move or a perfect endgame move, or Moves.NONE if the position must be searched
+    private int knownMove(Position position) {
+        if (book != null) {
+            int move = book.pickMove(position, random);
+            if (move != Moves.NONE) {
+                if (listener == null)
+                    System.out.println("book " + Moves.toUCI(move));
+                return move;
+            }
+        }
+        if (tablebase != null) {
+            int move = tablebase.bestMove(position);
+            if (move != Moves.NONE) {
+                if (listener == null)
+                    System.out.println("tablebase " + Moves.toUCI(move));
+                return move;
+            }
+        }
+        return Moves.NONE;
+    }
+
+    /**
+     * Forgets everything learned in the previous game.
+     */
+    public void newGame() {
+        search.getTranspositionTable().clear();
+    }
+
+    /**
+     * Sets the transposition table size in megabytes. The table is cleared.
+     */
+    public void setHashSize(int megabytes) {
+        search.getTranspositionTable().resize(megabytes);
+    }
+
+    /**
+     * Returns how full the transposition table is, in permille.
+     */
+    public int getHashFull() {
+        return (int) (search.getTranspositionTable().getFillRate() * 1000);
+    }
+
+    /**
+     * Returns the percentage of the current search's table probes that hit.
+     */
+    public double getHashHitRate() {
+        return search.getTranspositionTable().getHitRate() * 100;
+    }
+
+    /**
+     * Stops a search in progress; chooseMove then returns its best move so far.
+     */
+    public void stop() {
+        search.stop();
+    }
+
+    /**
+     * Maps the difficulty to a search budget.
+     */
+    public SearchLimits getLimits() {
+        return switch (difficulty) {
+            case "Easy" -> new SearchLimits(2, 200, 0);
+            case "Hard" -> new SearchLimits(0, 3000, 0);
+            default -> new SearchLimits(5, 1000, 0); // Medium
+        };
+    }
+
+    /**
+     * Maps the difficulty to a search budget on a clock for the given side.
+     */
+    public SearchLimits getLimits(int color, long timeLeftMillis, long incrementMillis) {
+        long[] time = new long[2];
+        long[] increment = new long[2];
+        time[color] = timeLeftMillis;
+        increment[color] = incrementMillis;
+        return new SearchLimits(getLimits().getDepth(), 0, 0, time[0], time[1], increment[0], increment[1], 0);
+    }
+
+    // Prints one line per completed iteration: depth, score, nodes, speed, hash use and PV
+    private void reportIteration(int depth, int score, long nodes, long millis, int[] pv, int pvLength) {
+        if (listener != null) {
+            listener.iterationComplete(depth, score, nodes, millis, pv, pvLength);
+            return;
+        }
+        StringBuilder line = new StringBuilder();
+        line.append("depth ").append(depth)
+                .append(" score ").append(formatScore(score))
+                .append(" nodes ").append(nodes)
+                .append(" nps ").append(millis > 0 ? nodes * 1000 / millis : 0)
+                .append(" time ").append(millis)
+                .append(" hashfull ").append(getHashFull())
+                .append(" hashhit ").append(String.format("%.1f%%", getHashHitRate()))
+                .append(" pv");
+        for (int i = 0; i < pvLength; i++)
+            line.append(' ').append(Moves.toUCI(pv[i]));
+        System.out.println(line);
+    }
+
+    /**
+     * Formats a score as "cp N" or, for forced mates, "mate N" in moves.
+     */
+    public static String formatScore(int score) {
+        if (Math.abs(score) >= Search.MATE_BOUND) {
+            int plies = Search.MATE - Math.abs(score);
+            int moves = (plies + 1) / 2;
+            return "mate " + (score > 0 ? moves : -moves);
+        }
+        return "cp " + score;
     }
 }
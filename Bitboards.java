@@ -0,0 +1,239 @@
+/**
+ * Bitboards holds the precomputed attack tables used by move generation:
+ * knight, king and pawn attacks per square, and magic-bitboard lookup tables
+ * for rook and bishop (and therefore queen) attacks.
+ *
+ * All tables are built once when the class is loaded. Lookups are plain array
+ * reads and never allocate.
+ */
+public final class Bitboards {
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_B = FILE_A << 1;
+    public static final long FILE_G = FILE_A << 6;
+    public static final long FILE_H = FILE_A << 7;
+    public static final long RANK_1 = 0xFFL;
+    public static final long RANK_2 = RANK_1 << 8;
+    public static final long RANK_3 = RANK_1 << 16;
+    public static final long RANK_6 = RANK_1 << 40;
+    public static final long RANK_7 = RANK_1 << 48;
+    public static final long RANK_8 = RANK_1 << 56;
+
+    public static final long[] KNIGHT_ATTACKS = new long[64];
+    public static final long[] KING_ATTACKS = new long[64];
+    public static final long[][] PAWN_ATTACKS = new long[2][64]; // Indexed by colour of the attacking pawn
+
+    // Squares strictly between two aligned squares, and the full line through them (0 if not aligned)
+    public static final long[][] BETWEEN = new long[64][64];
+    public static final long[][] LINE = new long[64][64];
+
+    private static final int[][] ROOK_DIRECTIONS = { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 } };
+    private static final int[][] BISHOP_DIRECTIONS = { { 1, 1 }, { 1, -1 }, { -1, 1 }, { -1, -1 } };
+
+    // Magic lookup data: attacks = TABLE[OFFSET[sq] + ((occ & MASK[sq]) * MAGIC[sq]) >>> SHIFT[sq]]
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final long[] ROOK_MAGICS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final int[] ROOK_OFFSETS = new int[64];
+    private static final long[] ROOK_TABLE;
+
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final long[] BISHOP_MAGICS = new long[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final int[] BISHOP_OFFSETS = new int[64];
+    private static final long[] BISHOP_TABLE;
+
+    private static long seed = 0x2545F4914F6CDD1DL; // Fixed seed so the magic search is repeatable
+
+    static {
+        initLeaperAttacks();
+        ROOK_TABLE = initMagics(ROOK_DIRECTIONS, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_OFFSETS);
+        BISHOP_TABLE = initMagics(BISHOP_DIRECTIONS, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_OFFSETS);
+        initLines();
+    }
+
+    private Bitboards() {
+    }
+
+    /**
+     * Forces the tables to be built now rather than on first use, so the
+     * start-up cost does not land inside a timed run.
+     */
+    public static void init() {
+    }
+
+    // ------------------ Attack Lookups ------------------
+
+    public static long knightAttacks(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    public static long kingAttacks(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    public static long pawnAttacks(int color, int square) {
+        return PAWN_ATTACKS[color][square];
+    }
+
+    public static long rookAttacks(int square, long occupied) {
+        return ROOK_TABLE[ROOK_OFFSETS[square]
+                + (int) (((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square])];
+    }
+
+    public static long bishopAttacks(int square, long occupied) {
+        return BISHOP_TABLE[BISHOP_OFFSETS[square]
+                + (int) (((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square])];
+    }
+
+    public static long queenAttacks(int square, long occupied) {
+        return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+    }
+
+    // ------------------ Table Construction ------------------
+
+    private static void initLeaperAttacks() {
+        int[][] knightSteps = {
+                { 2, 1 }, { 2, -1 }, { -2, 1 }, { -2, -1 },
+                { 1, 2 }, { 1, -2 }, { -1, 2 }, { -1, -2 }
+        };
+        int[][] kingSteps = {
+                { 1, 0 }, { 0, 1 }, { -1, 0 }, { 0, -1 },
+                { 1, 1 }, { 1, -1 }, { -1, 1 }, { -1, -1 }
+        };
+
+        for (int sq = 0; sq < 64; sq++) {
+            int file = Position.fileOf(sq), rank = Position.rankOf(sq);
+            KNIGHT_ATTACKS[sq] = stepAttacks(file, rank, knightSteps);
+            KING_ATTACKS[sq] = stepAttacks(file, rank, kingSteps);
+            PAWN_ATTACKS[Position.WHITE][sq] = stepAttacks(file, rank, new int[][] { { -1, 1 }, { 1, 1 } });
+            PAWN_ATTACKS[Position.BLACK][sq] = stepAttacks(file, rank, new int[][] { { -1, -1 }, { 1, -1 } });
+        }
+    }
+
+    private static void initLines() {
+        for (int a = 0; a < 64; a++) {
+            for (int b = 0; b < 64; b++) {
+                if (a == b)
+                    continue;
+                long bBit = 1L << b;
+                if ((rookAttacks(a, 0L) & bBit) != 0) {
+                    BETWEEN[a][b] = rookAttacks(a, bBit) & rookAttacks(b, 1L << a);
+                    LINE[a][b] = (rookAttacks(a, 0L) & rookAttacks(b, 0L)) | (1L << a) | bBit;
+                } else if ((bishopAttacks(a, 0L) & bBit) != 0) {
+                    BETWEEN[a][b] = bishopAttacks(a, bBit) & bishopAttacks(b, 1L << a);
+                    LINE[a][b] = (bishopAttacks(a, 0L) & bishopAttacks(b, 0L)) | (1L << a) | bBit;
+                }
+            }
+        }
+    }
+
+    private static long stepAttacks(int file, int rank, int[][] steps) {
+        long attacks = 0L;
+        for (int[] step : steps) {
+            int f = file + step[0], r = rank + step[1];
+            if (f >= 0 && f < 8 && r >= 0 && r < 8)
+                attacks |= 1L << Position.square(f, r);
+        }
+        return attacks;
+    }
+
+    /**
+     * Walks each direction from a square until the edge or a blocker. Used only
+     * while building the magic tables.
+     */
+    private static long slidingAttacks(int square, long occupied, int[][] directions) {
+        long attacks = 0L;
+        for (int[] d : directions) {
+            int f = Position.fileOf(square) + d[0], r = Position.rankOf(square) + d[1];
+            while (f >= 0 && f < 8 && r >= 0 && r < 8) {
+                long bit = 1L << Position.square(f, r);
+                attacks |= bit;
+                if ((occupied & bit) != 0)
+                    break;
+                f += d[0];
+                r += d[1];
+            }
+        }
+        return attacks;
+    }
+
+    /**
+     * Relevant occupancy mask: the rays from a square excluding the final edge
+     * square of each ray, since a blocker there cannot change the attack set.
+     */
+    private static long relevantMask(int square, int[][] directions) {
+        long mask = 0L;
+        for (int[] d : directions) {
+            int f = Position.fileOf(square) + d[0], r = Position.rankOf(square) + d[1];
+            while (f + d[0] >= 0 && f + d[0] < 8 && r + d[1] >= 0 && r + d[1] < 8) {
+                mask |= 1L << Position.square(f, r);
+                f += d[0];
+                r += d[1];
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Finds a magic multiplier for every square by trial and fills the shared
+     * attack table. Returns the table.
+     */
+    private static long[] initMagics(int[][] directions, long[] masks, long[] magics, int[] shifts, int[] offsets) {
+        int total = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            masks[sq] = relevantMask(sq, directions);
+            int bits = Long.bitCount(masks[sq]);
+            shifts[sq] = 64 - bits;
+            offsets[sq] = total;
+            total += 1 << bits;
+        }
+
+        long[] table = new long[total];
+        long[] occupancies = new long[4096];
+        long[] attacks = new long[4096];
+        int[] epoch = new int[4096];
+        int attempt = 0;
+
+        for (int sq = 0; sq < 64; sq++) {
+            long mask = masks[sq];
+            int size = 0;
+
+            // Enumerate all subsets of the mask (Carry-Rippler)
+            long subset = 0L;
+            do {
+                occupancies[size] = subset;
+                attacks[size] = slidingAttacks(sq, subset, directions);
+                size++;
+                subset = (subset - mask) & mask;
+            } while (subset != 0);
+
+            search: while (true) {
+                long magic = nextRandom() & nextRandom() & nextRandom();
+                if (Long.bitCount((mask * magic) & 0xFF00000000000000L) < 6)
+                    continue;
+
+                attempt++;
+                for (int i = 0; i < size; i++) {
+                    int index = (int) ((occupancies[i] * magic) >>> shifts[sq]);
+                    if (epoch[index] < attempt) {
+                        epoch[index] = attempt;
+                        table[offsets[sq] + index] = attacks[i];
+                    } else if (table[offsets[sq] + index] != attacks[i]) {
+                        continue search; // Destructive collision, try another candidate
+                    }
+                }
+                magics[sq] = magic;
+                break;
+            }
+        }
+        return table;
+    }
+
+    private static long nextRandom() {
+        // xorshift64*
+        seed ^= seed >>> 12;
+        seed ^= seed << 25;
+        seed ^= seed >>> 27;
+        return seed * 0x2545F4914F6CDD1DL;
+    }
+}
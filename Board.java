@@ -1,30 +1,22 @@
+import javafx.application.Platform;
 import javafx.scene.layout.GridPane;
-import java.util.HashMap;
 
 /**
- * The Board class represents the chess board and manages all its logic,
- * including square setup, piece placement, movement, and FEN generation.
+ * The Board class is the JavaFX view of a chess game. All game state lives in
+ * a headless {@link Position}; the board renders squares and pieces from it
+ * and forwards user moves back to it.
  */
 public class Board {
     private static final int SIZE = 8; // Standard chess board is 8x8
+    private static final String[] PIECE_NAMES = { "Pawn", "Knight", "Bishop", "Rook", "Queen", "King" };
     private GridPane gridPane; // JavaFX layout for GUI representation
-    private HashMap<String, Square> squares; // Map of positions (e.g. "E2") to Square objects
+    private Square[] squares; // Square objects indexed by Position square (A1 = 0, H8 = 63)
+    private Position position; // Logical game state rendered by this board
+    private final StringBuilder fenBuffer = new StringBuilder(90); // Reused by getFEN
     private Piece selectedPiece = null; // Currently selected piece for movement
     private Player player; // Current human player
-    private AI ai; // Opponent AI (if implemented)
-
-    // Castling rights
-    private boolean canWhiteCastleKingside = true;
-    private boolean canWhiteCastleQueenside = true;
-    private boolean canBlackCastleKingside = true;
-    private boolean canBlackCastleQueenside = true;
-
-    // En passant state
-    private Square enPassantTargetSquare = null;
-
-    // Clock for 50-move rule and full move count
-    private int halfMoveClock = 0;
-    private int fullMoveNumber = 1;
+    private AI ai; // Computer opponent
+    private volatile boolean aiThinking = false; // True while the AI searches in the background
 
     /**
      * Constructor initializes the board with player and AI references,
@@ -34,7 +26,8 @@ public class Board {
         this.player = player;
         this.ai = ai;
         this.gridPane = new GridPane();
-        this.squares = new HashMap<>();
+        this.squares = new Square[SIZE * SIZE];
+        this.position = new Position();
         initializeBoard(); // Set up empty squares
         placePieces(); // Add pieces to starting positions
     }
@@ -45,87 +38,138 @@ public class Board {
     private void initializeBoard() {
         for (int file = 0; file < SIZE; file++) {
             for (int rank = 0; rank < SIZE; rank++) {
-                String position = getChessCoordinate(rank, file); // E.g., "A1"
-                Square cell = new Square(position);
+                int index = Position.square(file, rank);
+                Square cell = new Square(getChessCoordinate(rank, file)); // E.g., "A1"
 
                 // Allow user interaction on square
-                cell.setOnMouseClicked(event -> handleSquareClick(position));
+                cell.setOnMouseClicked(event -> handleSquareClick(index));
 
-                squares.put(position, cell); // Save in map
+                squares[index] = cell; // Save in array
                 gridPane.add(cell, file, SIZE - rank - 1); // GUI positioning
             }
         }
     }
 
     /**
-     * Adds all chess pieces to their standard initial positions.
+     * Sets up the standard initial position and renders it.
      */
     private void placePieces() {
-        // Pawns
-        for (int col = 0; col < SIZE; col++) {
-            addPiece(new Piece("Pawn", false, col, 6, this)); // White
-            addPiece(new Piece("Pawn", true, col, 1, this)); // Black
-        }
+        position.setStartPosition();
+        render();
+    }
 
-        // Rooks
-        addPiece(new Piece("Rook", false, 0, 7, this));
-        addPiece(new Piece("Rook", false, 7, 7, this));
-        addPiece(new Piece("Rook", true, 0, 0, this));
-        addPiece(new Piece("Rook", true, 7, 0, this));
-
-        // Knights
-        addPiece(new Piece("Knight", false, 1, 7, this));
-        addPiece(new Piece("Knight", false, 6, 7, this));
-        addPiece(new Piece("Knight", true, 1, 0, this));
-        addPiece(new Piece("Knight", true, 6, 0, this));
-
-        // Bishops
-        addPiece(new Piece("Bishop", false, 2, 7, this));
-        addPiece(new Piece("Bishop", false, 5, 7, this));
-        addPiece(new Piece("Bishop", true, 2, 0, this));
-        addPiece(new Piece("Bishop", true, 5, 0, this));
-
-        // Queens
-        addPiece(new Piece("Queen", false, 3, 7, this));
-        addPiece(new Piece("Queen", true, 3, 0, this));
-
-        // Kings
-        addPiece(new Piece("King", false, 4, 7, this));
-        addPiece(new Piece("King", true, 4, 0, this));
+    /**
+     * Rebuilds the pieces shown on every square from the current position.
+     */
+    public void render() {
+        for (int index = 0; index < squares.length; index++) {
+            int piece = position.getPieceAt(index);
+            if (piece == Position.NO_PIECE) {
+                squares[index].removePiece();
+            } else {
+                addPiece(new Piece(PIECE_NAMES[Position.typeOf(piece)], Position.colorOf(piece) == Position.WHITE,
+                        Position.fileOf(index), Position.rankOf(index), this));
+            }
+        }
     }
 
     /**
      * Handles click events on a square for selecting and moving a piece.
      */
-    private void handleSquareClick(String position) {
-        if (selectedPiece == null)
-            return; // No piece selected yet
-
-        Square oldSquare = getSquare(selectedPiece.getRank(), selectedPiece.getFile());
-        Square newSquare = getSquare(position);
+    private void handleSquareClick(int index) {
+        if (selectedPiece == null || aiThinking)
+            return; // No piece selected yet, or not the user's turn
 
-        if (newSquare == oldSquare)
+        int from = Position.square(selectedPiece.getFile(), selectedPiece.getRank());
+        if (index == from)
             return; // Clicked same square
-        if (newSquare.isOccupied() && newSquare.getPiece().isWhite() == selectedPiece.isWhite())
-            return; // Same-color capture
 
-        if (!selectedPiece.getValidMoves().contains(position))
+        int move = findLegalMove(from, index);
+        if (move == Moves.NONE)
             return; // Invalid move
 
-        // Move piece visually and logically
-        oldSquare.removePiece();
-        newSquare.setPiece(selectedPiece);
+        Move played = new Move(move, this);
+        selectedPiece.deselect(); // Deselect before the pieces are re-rendered
+
+        // Play the move logically, then redraw from the position
+        position.makeMove(move);
+        render();
+
+        System.out.println(played.getMovedPiece().getType() + " to " + played.getToPosition());
+        System.out.println(getFEN());
+
+        if (!reportGameOver() && position.isWhiteToMove() != player.isWhite())
+            requestAIMove();
+    }
+
+    /**
+     * Lets the AI choose a move on a background thread so the window stays
+     * responsive, then plays it on the JavaFX thread.
+     */
+    public void requestAIMove() {
+        if (ai == null || aiThinking)
+            return;
+        aiThinking = true;
+        Position snapshot = new Position(position); // The search never touches the rendered position
+
+        Thread thread = new Thread(() -> {
+            int move = ai.chooseMove(snapshot);
+            Platform.runLater(() -> {
+                aiThinking = false;
+                if (move == Moves.NONE)
+                    return;
+                Move played = new Move(move, this);
+                position.makeMove(move);
+                render();
+
+                System.out.println("AI: " + played.getMovedPiece().getType() + " to " + played.getToPosition());
+                System.out.println(getFEN());
+                reportGameOver();
+            });
+        }, "ai-search");
+        thread.setDaemon(true); // Do not keep the JVM alive after the window closes
+        thread.start();
+    }
 
-        System.out.println(selectedPiece.getType() + " to " + position);
+    /**
+     * Prints the result if the side to move has no legal moves.
+     */
+    private boolean reportGameOver() {
+        if (MoveGenerator.generateLegal(position, new int[MoveGenerator.MAX_MOVES]) > 0)
+            return false;
+        System.out.println(position.isInCheck() ? "Checkmate" : "Stalemate");
+        return true;
+    }
 
-        selectedPiece.deselect(); // Deselect after move
+    /**
+     * Finds the legal move between two squares, asking the user for the
+     * promotion piece when needed. Returns Moves.NONE if there is no such move.
+     */
+    private int findLegalMove(int from, int to) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegal(position, moves);
+        String promotion = null;
+
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            if (Moves.from(move) != from || Moves.to(move) != to)
+                continue;
+            if (Moves.isPromotion(move)) {
+                if (promotion == null)
+                    promotion = selectedPiece.choosePromotion();
+                if (!PIECE_NAMES[Position.typeOf(Moves.promotion(move))].equals(promotion))
+                    continue;
+            }
+            return move;
+        }
+        return Moves.NONE;
     }
 
     /**
      * Adds a piece to its corresponding square.
      */
     private void addPiece(Piece piece) {
-        Square square = getSquare(piece.getPosition());
+        Square square = getSquare(piece.getRank(), piece.getFile());
         square.setPiece(piece);
     }
 
@@ -137,57 +181,19 @@ public class Board {
     }
 
     /**
-     * Generates a FEN (Forsyth–Edwards Notation) string representing current board
+     * Generates a FEN (Forsyth-Edwards Notation) string representing current board
      * state.
      */
     public String getFEN() {
-        StringBuilder fen = new StringBuilder();
-
-        // Piece placement
-        for (int rank = SIZE - 1; rank >= 0; rank--) {
-            int emptyCount = 0;
-            for (int file = 0; file < SIZE; file++) {
-                Square square = getSquare(rank, file);
-                if (square.isOccupied()) {
-                    if (emptyCount > 0) {
-                        fen.append(emptyCount);
-                        emptyCount = 0;
-                    }
-                    fen.append(square.getPiece().getFENChar());
-                } else {
-                    emptyCount++;
-                }
-            }
-            if (emptyCount > 0)
-                fen.append(emptyCount);
-            if (rank > 0)
-                fen.append('/');
-        }
+        fenBuffer.setLength(0);
+        return position.writeFEN(fenBuffer).toString();
+    }
 
-        // Active color
-        fen.append(' ').append(player.isWhite() ? 'w' : 'b');
-
-        // Castling rights
-        fen.append(' ');
-        if (canWhiteCastleKingside)
-            fen.append('K');
-        if (canWhiteCastleQueenside)
-            fen.append('Q');
-        if (canBlackCastleKingside)
-            fen.append('k');
-        if (canBlackCastleQueenside)
-            fen.append('q');
-        if (fen.charAt(fen.length() - 1) == ' ')
-            fen.append('-');
-
-        // En passant target
-        fen.append(' ');
-        fen.append(enPassantTargetSquare != null ? enPassantTargetSquare.getPosition() : "-");
-
-        // Half-move clock and full move number
-        fen.append(' ').append(halfMoveClock).append(' ').append(fullMoveNumber);
-
-        return fen.toString();
+    /**
+     * Returns the headless position this board renders.
+     */
+    public Position getPosition() {
+        return position;
     }
 
     /**
@@ -210,14 +216,15 @@ public class Board {
      * Get a square using chess notation like "E4".
      */
     public Square getSquare(String position) {
-        return squares.get(position);
+        int index = Position.parseSquare(position);
+        return index == Position.NO_SQUARE ? null : squares[index];
     }
 
     /**
      * Get a square using file and rank.
      */
     public Square getSquare(int rank, int file) {
-        return squares.get(getChessCoordinate(rank, file));
+        return isValidSquare(file, rank) ? squares[Position.square(file, rank)] : null;
     }
 
     /**
@@ -257,9 +264,11 @@ public class Board {
 
 
     public void setEnPassantTargetSquare(Square square) {
-        this.enPassantTargetSquare = square;
+        position.setEnPassantTargetSquare(
+                square != null ? Position.parseSquare(square.getPosition()) : Position.NO_SQUARE);
     }
     public Square getEnPassantTargetSquare() {
-        return enPassantTargetSquare;
+        int index = position.getEnPassantTargetSquare();
+        return index != Position.NO_SQUARE ? squares[index] : null;
     }
 }
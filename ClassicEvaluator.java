@@ -0,0 +1,42 @@
+/**
+ * ClassicEvaluator is the hand-written {@link Evaluation} behind the
+ * {@link Evaluator} interface, with its own pawn hash table. It keeps no
+ * state of its own between moves, since Position already maintains the
+ * incremental parts.
+ */
+public class ClassicEvaluator implements Evaluator {
+    private final PawnHashTable pawnTable;
+
+    public ClassicEvaluator() {
+        this(new PawnHashTable(PawnHashTable.DEFAULT_MB));
+    }
+
+    public ClassicEvaluator(PawnHashTable pawnTable) {
+        this.pawnTable = pawnTable;
+    }
+
+    public PawnHashTable getPawnTable() {
+        return pawnTable;
+    }
+
+    @Override
+    public void reset(Position pos) {
+    }
+
+    @Override
+    public void makeMove(int move) {
+    }
+
+    @Override
+    public void makeNullMove() {
+    }
+
+    @Override
+    public void unmakeMove() {
+    }
+
+    @Override
+    public int evaluate(Position pos) {
+        return Evaluation.evaluate(pos, pawnTable);
+    }
+}
@@ -0,0 +1,261 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * EvalWeights holds every number the {@link Evaluation} uses, by name, so the
+ * evaluation can be tuned by editing a text file instead of the code.
+ *
+ * The file has one parameter per line: a name, '=', and its values separated
+ * by spaces. Values may continue on the following lines; blank lines and
+ * anything after '#' are ignored. Names not in the file keep their default
+ * values, and unknown names or the wrong number of values are rejected.
+ * Piece-square tables are written as eight rows from rank 8 down to rank 1,
+ * as seen by White, the way a board diagram reads.
+ *
+ *   material.mg = 82 337 365 477 1025 0
+ *   pawn.doubled = -10 -20           # middlegame, endgame
+ *
+ * {@link #write} produces a complete file with the current values, which is a
+ * convenient starting point.
+ */
+public class EvalWeights {
+    public static final String[] PIECE_NAMES = { "pawn", "knight", "bishop", "rook", "queen", "king" };
+
+    private final Map<String, int[]> parameters = new LinkedHashMap<>();
+
+    /**
+     * Returns a new set of weights with the built-in default values.
+     */
+    public static EvalWeights defaults() {
+        EvalWeights weights = new EvalWeights();
+        weights.set("material.mg", 82, 337, 365, 477, 1025, 0);
+        weights.set("material.eg", 94, 281, 297, 512, 936, 0);
+
+        weights.set("pst.pawn.mg",
+                0, 0, 0, 0, 0, 0, 0, 0,
+                98, 134, 61, 95, 68, 126, 34, -11,
+                -6, 7, 26, 31, 65, 56, 25, -20,
+                -14, 13, 6, 21, 23, 12, 17, -23,
+                -27, -2, -5, 12, 17, 6, 10, -25,
+                -26, -4, -4, -10, 3, 3, 33, -12,
+                -35, -1, -20, -23, -15, 24, 38, -22,
+                0, 0, 0, 0, 0, 0, 0, 0);
+        weights.set("pst.pawn.eg",
+                0, 0, 0, 0, 0, 0, 0, 0,
+                178, 173, 158, 134, 147, 132, 165, 187,
+                94, 100, 85, 67, 56, 53, 82, 84,
+                32, 24, 13, 5, -2, 4, 17, 17,
+                13, 9, -3, -7, -7, -8, 3, -1,
+                4, 7, -6, 1, 0, -5, -1, -8,
+                13, 8, 8, 10, 13, 0, 2, -7,
+                0, 0, 0, 0, 0, 0, 0, 0);
+        weights.set("pst.knight.mg",
+                -167, -89, -34, -49, 61, -97, -15, -107,
+                -73, -41, 72, 36, 23, 62, 7, -17,
+                -47, 60, 37, 65, 84, 129, 73, 44,
+                -9, 17, 19, 53, 37, 69, 18, 22,
+                -13, 4, 16, 13, 28, 19, 21, -8,
+                -23, -9, 12, 10, 19, 17, 25, -16,
+                -29, -53, -12, -3, -1, 18, -14, -19,
+                -105, -21, -58, -33, -17, -28, -19, -23);
+        weights.set("pst.knight.eg",
+                -58, -38, -13, -28, -31, -27, -63, -99,
+                -25, -8, -25, -2, -9, -25, -24, -52,
+                -24, -20, 10, 9, -1, -9, -19, -41,
+                -17, 3, 22, 22, 22, 11, 8, -18,
+                -18, -6, 16, 25, 16, 17, 4, -18,
+                -23, -3, -1, 15, 10, -3, -20, -22,
+                -42, -20, -10, -5, -2, -20, -23, -44,
+                -29, -51, -23, -15, -22, -18, -50, -64);
+        weights.set("pst.bishop.mg",
+                -29, 4, -82, -37, -25, -42, 7, -8,
+                -26, 16, -18, -13, 30, 59, 18, -47,
+                -16, 37, 43, 40, 35, 50, 37, -2,
+                -4, 5, 19, 50, 37, 37, 7, -2,
+                -6, 13, 13, 26, 34, 12, 10, 4,
+                0, 15, 15, 15, 14, 27, 18, 10,
+                4, 15, 16, 0, 7, 21, 33, 1,
+                -33, -3, -14, -21, -13, -12, -39, -21);
+        weights.set("pst.bishop.eg",
+                -14, -21, -11, -8, -7, -9, -17, -24,
+                -8, -4, 7, -12, -3, -13, -4, -14,
+                2, -8, 0, -1, -2, 6, 0, 4,
+                -3, 9, 12, 9, 14, 10, 3, 2,
+                -6, 3, 13, 19, 7, 10, -3, -9,
+                -12, -3, 8, 10, 13, 3, -7, -15,
+                -14, -18, -7, -1, 4, -9, -15, -27,
+                -23, -9, -23, -5, -9, -16, -5, -17);
+        weights.set("pst.rook.mg",
+                32, 42, 32, 51, 63, 9, 31, 43,
+                27, 32, 58, 62, 80, 67, 26, 44,
+                -5, 19, 26, 36, 17, 45, 61, 16,
+                -24, -11, 7, 26, 24, 35, -8, -20,
+                -36, -26, -12, -1, 9, -7, 6, -23,
+                -45, -25, -16, -17, 3, 0, -5, -33,
+                -44, -16, -20, -9, -1, 11, -6, -71,
+                -19, -13, 1, 17, 16, 7, -37, -26);
+        weights.set("pst.rook.eg",
+                13, 10, 18, 15, 12, 12, 8, 5,
+                11, 13, 13, 11, -3, 3, 8, 3,
+                7, 7, 7, 5, 4, -3, -5, -3,
+                4, 3, 13, 1, 2, 1, -1, 2,
+                3, 5, 8, 4, -5, -6, -8, -11,
+                -4, 0, -5, -1, -7, -12, -8, -16,
+                -6, -6, 0, 2, -9, -9, -11, -3,
+                -9, 2, 3, -1, -5, -13, 4, -20);
+        weights.set("pst.queen.mg",
+                -28, 0, 29, 12, 59, 44, 43, 45,
+                -24, -39, -5, 1, -16, 57, 28, 54,
+                -13, -17, 7, 8, 29, 56, 47, 57,
+                -27, -27, -16, -16, -1, 17, -2, 1,
+                -9, -26, -9, -10, -2, -4, 3, -3,
+                -14, 2, -11, -2, -5, 2, 14, 5,
+                -35, -8, 11, 2, 8, 15, -3, 1,
+                -1, -18, -9, 10, -15, -25, -31, -50);
+        weights.set("pst.queen.eg",
+                -9, 22, 22, 27, 27, 19, 10, 20,
+                -17, 20, 32, 41, 58, 25, 30, 0,
+                -20, 6, 9, 49, 47, 35, 19, 9,
+                3, 22, 24, 45, 57, 40, 57, 36,
+                -18, 28, 19, 47, 31, 34, 39, 23,
+                -16, -27, 15, 6, 9, 17, 10, 5,
+                -22, -23, -30, -16, -16, -23, -36, -32,
+                -33, -28, -22, -43, -5, -32, -20, -41);
+        weights.set("pst.king.mg",
+                -65, 23, 16, -15, -56, -34, 2, 13,
+                29, -1, -20, -7, -8, -4, -38, -29,
+                -9, 24, 2, -16, -20, 6, 22, -22,
+                -17, -20, -12, -27, -30, -25, -14, -36,
+                -49, -1, -27, -39, -46, -44, -33, -51,
+                -14, -14, -22, -46, -44, -30, -15, -27,
+                1, 7, -8, -64, -43, -16, 9, 8,
+                -15, 36, 12, -54, 8, -28, 24, 14);
+        weights.set("pst.king.eg",
+                -74, -35, -18, -18, -11, 15, 4, -17,
+                -12, 17, 14, 17, 17, 38, 23, 11,
+                10, 17, 23, 15, 20, 45, 44, 13,
+                -8, 22, 24, 27, 26, 33, 26, 3,
+                -18, -4, 21, 24, 27, 23, 9, -11,
+                -19, -3, 11, 21, 23, 16, 7, -9,
+                -27, -11, 4, 13, 14, 4, -5, -17,
+                -53, -34, -21, -11, -28, -14, -24, -43);
+
+        // Pawn structure: middlegame, endgame (passed pawns per rank from the pawn's side)
+        weights.set("pawn.doubled", -10, -20);
+        weights.set("pawn.isolated", -8, -12);
+        weights.set("pawn.backward", -6, -8);
+        weights.set("pawn.passed.mg", 0, 2, 5, 10, 20, 35, 55, 0);
+        weights.set("pawn.passed.eg", 0, 8, 12, 25, 45, 75, 110, 0);
+        weights.set("pawn.passedKing", 3, 1); // Endgame: per square of enemy / own king distance
+
+        // Mobility: per reachable square beyond the centre count, middlegame and endgame
+        weights.set("mobility.center", 0, 4, 6, 7, 13, 0);
+        weights.set("mobility.mg", 0, 4, 5, 2, 1, 0);
+        weights.set("mobility.eg", 0, 4, 5, 4, 2, 0);
+
+        // King safety: shield pawn bonus, attack units per attacking piece type,
+        // and the penalty scale (units * units * scale / 16, at most max)
+        weights.set("king.shield", 12, 0);
+        weights.set("king.attack", 0, 2, 2, 3, 5, 0);
+        weights.set("king.danger", 7, 500);
+
+        weights.set("bishop.pair", 30, 50);
+        weights.set("tempo", 10, 0);
+        weights.set("phase", 0, 1, 1, 2, 4, 0);
+        return weights;
+    }
+
+    /**
+     * Reads weights from a file, starting from the defaults.
+     *
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file has an unknown parameter
+     *         or a parameter with the wrong number of values
+     */
+    public static EvalWeights load(Path path) throws IOException {
+        EvalWeights weights = defaults();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            StringBuilder text = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comment = line.indexOf('#');
+                text.append(comment >= 0 ? line.substring(0, comment) : line).append(' ');
+            }
+            weights.parse(text.toString());
+        }
+        return weights;
+    }
+
+    // Parameters are "name = values..."; a name is the token before each '='
+    private void parse(String text) {
+        String[] tokens = text.replace("=", " = ").trim().split("\\s+");
+        int i = 0;
+        while (i < tokens.length && !tokens[i].isEmpty()) {
+            String name = tokens[i];
+            if (i + 1 >= tokens.length || !tokens[i + 1].equals("="))
+                throw new IllegalArgumentException("Expected '=' after " + name);
+            int[] expected = parameters.get(name);
+            if (expected == null)
+                throw new IllegalArgumentException("Unknown evaluation parameter: " + name);
+
+            i += 2;
+            int[] values = new int[expected.length];
+            int count = 0;
+            while (i < tokens.length && (i + 1 >= tokens.length || !tokens[i + 1].equals("="))) {
+                if (count == values.length)
+                    throw new IllegalArgumentException("Too many values for " + name);
+                try {
+                    values[count++] = Integer.parseInt(tokens[i++]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Bad value for " + name + ": " + tokens[i - 1]);
+                }
+            }
+            if (count != values.length)
+                throw new IllegalArgumentException(name + " needs " + values.length + " values, found " + count);
+            parameters.put(name, values);
+        }
+    }
+
+    /**
+     * Writes every parameter in the file format read by {@link #load}.
+     */
+    public void write(PrintStream out) {
+        for (Map.Entry<String, int[]> entry : parameters.entrySet()) {
+            int[] values = entry.getValue();
+            out.print(entry.getKey() + " =");
+            for (int i = 0; i < values.length; i++) {
+                if (values.length == 64 && i % 8 == 0)
+                    out.print("\n   ");
+                out.print(" " + values[i]);
+            }
+            out.println();
+        }
+    }
+
+    /**
+     * Returns a copy of a parameter's values.
+     */
+    public int[] get(String name) {
+        int[] values = parameters.get(name);
+        if (values == null)
+            throw new IllegalArgumentException("Unknown evaluation parameter: " + name);
+        return values.clone();
+    }
+
+    /**
+     * Sets a parameter's values, e.g. from a tuner.
+     */
+    public void set(String name, int... values) {
+        int[] old = parameters.get(name);
+        if (old != null && old.length != values.length)
+            throw new IllegalArgumentException(name + " needs " + old.length + " values");
+        parameters.put(name, Arrays.copyOf(values, values.length));
+    }
+}
@@ -0,0 +1,426 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Evaluation scores a position in centipawns from the point of view of the
+ * side to move. It adds up
+ *
+ * - material and piece-square tables, which {@link Position} keeps up to date
+ *   incrementally as pieces move (see {@link #PSQT}),
+ * - pawn structure: doubled, isolated, backward and passed pawns, cached in
+ *   a {@link PawnHashTable} when the caller provides one,
+ * - mobility: squares each piece can reach that are not guarded by pawns,
+ * - king safety: the pawn shield and the pieces attacking the king's zone,
+ * - passed pawns in the endgame: how close each king is to the pawn's path,
+ *
+ * each as a middlegame and an endgame score, and blends the two by how much
+ * material is left (tapering). All numbers come from {@link EvalWeights} and
+ * can be replaced with {@link #setWeights}.
+ *
+ * A middlegame/endgame pair is packed into one int as mg + (eg << 16), so both
+ * halves are summed with a single addition; see {@link #score}.
+ *
+ * Usage:
+ *   java Evaluation [--weights FILE] [FEN]   print the terms for a position
+ *   java Evaluation --dump                   print the default weights file
+ */
+public final class Evaluation {
+    // Centipawn value per piece type for move ordering, exchanges and adjudication (Pawn = 1 ...
+    // Queen = 9 in Piece.assignValue). The king is never captured; static exchange evaluation
+    // lets it capture last, so it is worth more than everything else together
+    public static final int[] PIECE_VALUES = { 100, 300, 300, 500, 900, 20000 };
+
+    public static final int MAX_PHASE = 24; // Phase with all pieces on the board
+
+    /**
+     * Packed material plus piece-square score for each piece on each square,
+     * from White's point of view (black pieces count negative). Position adds
+     * and subtracts these as pieces are put, removed and moved.
+     */
+    static final int[][] PSQT = new int[Position.NO_PIECE][64];
+
+    // Current weights, unpacked from EvalWeights for speed
+    private static int doubled;
+    private static int isolated;
+    private static int backward;
+    private static final int[] passed = new int[8]; // Per rank, seen from the pawn's side
+    private static int passedEnemyKing; // Endgame bonus per square of enemy king distance
+    private static int passedOwnKing; // Endgame penalty per square of own king distance
+    private static final int[] mobilityCenter = new int[6];
+    private static final int[] mobility = new int[6];
+    private static int shield;
+    private static final int[] kingAttack = new int[6];
+    private static int dangerScale;
+    private static int dangerMax;
+    private static int bishopPair;
+    private static int tempo;
+    private static final int[] phaseWeights = new int[6];
+
+    // Pawn structure masks
+    private static final long[] ADJACENT_FILES = new long[8];
+    private static final long[][] FORWARD_FILE = new long[2][64]; // Squares in front on the same file
+    private static final long[][] PASSED_SPAN = new long[2][64]; // Same and adjacent files in front
+    private static final long[][] SUPPORT_SPAN = new long[2][64]; // Adjacent files, same rank and behind
+
+    static {
+        for (int file = 0; file < 8; file++) {
+            long mask = 0L;
+            if (file > 0)
+                mask |= Bitboards.FILE_A << (file - 1);
+            if (file < 7)
+                mask |= Bitboards.FILE_A << (file + 1);
+            ADJACENT_FILES[file] = mask;
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            int file = Position.fileOf(sq);
+            int rank = Position.rankOf(sq);
+            long fileMask = Bitboards.FILE_A << file;
+            long above = rank == 7 ? 0L : -1L << (8 * (rank + 1)); // Ranks above this one
+            long below = rank == 0 ? 0L : -1L >>> (8 * (8 - rank)); // Ranks below this one
+            FORWARD_FILE[Position.WHITE][sq] = fileMask & above;
+            FORWARD_FILE[Position.BLACK][sq] = fileMask & below;
+            PASSED_SPAN[Position.WHITE][sq] = (fileMask | ADJACENT_FILES[file]) & above;
+            PASSED_SPAN[Position.BLACK][sq] = (fileMask | ADJACENT_FILES[file]) & below;
+            SUPPORT_SPAN[Position.WHITE][sq] = ADJACENT_FILES[file] & ~above;
+            SUPPORT_SPAN[Position.BLACK][sq] = ADJACENT_FILES[file] & ~below;
+        }
+        setWeights(EvalWeights.defaults());
+    }
+
+    private Evaluation() {
+    }
+
+    /**
+     * Replaces the evaluation weights. Positions keep the material and
+     * piece-square sums they were set up with, so this should be called
+     * before positions are created, e.g. at startup.
+     */
+    public static synchronized void setWeights(EvalWeights weights) {
+        int[] materialMg = weights.get("material.mg");
+        int[] materialEg = weights.get("material.eg");
+        for (int type = Position.PAWN; type <= Position.KING; type++) {
+            int[] pstMg = weights.get("pst." + EvalWeights.PIECE_NAMES[type] + ".mg");
+            int[] pstEg = weights.get("pst." + EvalWeights.PIECE_NAMES[type] + ".eg");
+            for (int sq = 0; sq < 64; sq++) {
+                int index = sq ^ 56; // Tables are written from rank 8 down
+                int white = score(materialMg[type] + pstMg[index], materialEg[type] + pstEg[index]);
+                int black = score(materialMg[type] + pstMg[sq], materialEg[type] + pstEg[sq]);
+                PSQT[Position.makePiece(Position.WHITE, type)][sq] = white;
+                PSQT[Position.makePiece(Position.BLACK, type)][sq] = -black;
+            }
+        }
+
+        doubled = pair(weights, "pawn.doubled");
+        isolated = pair(weights, "pawn.isolated");
+        backward = pair(weights, "pawn.backward");
+        int[] passedMg = weights.get("pawn.passed.mg");
+        int[] passedEg = weights.get("pawn.passed.eg");
+        for (int rank = 0; rank < 8; rank++)
+            passed[rank] = score(passedMg[rank], passedEg[rank]);
+        int[] passedKing = weights.get("pawn.passedKing");
+        passedEnemyKing = passedKing[0];
+        passedOwnKing = passedKing[1];
+
+        int[] center = weights.get("mobility.center");
+        int[] mobilityMg = weights.get("mobility.mg");
+        int[] mobilityEg = weights.get("mobility.eg");
+        for (int type = Position.PAWN; type <= Position.KING; type++) {
+            mobilityCenter[type] = center[type];
+            mobility[type] = score(mobilityMg[type], mobilityEg[type]);
+        }
+
+        shield = pair(weights, "king.shield");
+        System.arraycopy(weights.get("king.attack"), 0, kingAttack, 0, 6);
+        int[] danger = weights.get("king.danger");
+        dangerScale = danger[0];
+        dangerMax = danger[1];
+        bishopPair = pair(weights, "bishop.pair");
+        tempo = pair(weights, "tempo");
+        System.arraycopy(weights.get("phase"), 0, phaseWeights, 0, 6);
+    }
+
+    /**
+     * Loads weights from a file (see {@link EvalWeights}) and makes them
+     * current.
+     */
+    public static void loadWeights(Path path) throws IOException {
+        setWeights(EvalWeights.load(path));
+    }
+
+    private static int pair(EvalWeights weights, String name) {
+        int[] values = weights.get(name);
+        return score(values[0], values[1]);
+    }
+
+    // ------------------ Packed Scores ------------------
+
+    /**
+     * Packs a middlegame and an endgame score into one int.
+     */
+    public static int score(int mg, int eg) {
+        return (eg << 16) + mg;
+    }
+
+    public static int mg(int score) {
+        return (short) score;
+    }
+
+    public static int eg(int score) {
+        return (short) ((score + 0x8000) >> 16);
+    }
+
+    // ------------------ Evaluation ------------------
+
+    /**
+     * Returns the score of the position for the side to move.
+     */
+    public static int evaluate(Position pos) {
+        return evaluate(pos, null);
+    }
+
+    /**
+     * Returns the score of the position for the side to move, looking up and
+     * storing the pawn structure and king shelter in a pawn hash table (may
+     * be null).
+     */
+    public static int evaluate(Position pos, PawnHashTable pawnTable) {
+        int score = pos.getPsqt()
+                + evaluatePieces(pos, Position.WHITE) - evaluatePieces(pos, Position.BLACK);
+
+        long passedPawns;
+        if (pawnTable != null && pawnTable.probe(pos.getPawnKey())) {
+            score += pawnTable.getScore();
+            passedPawns = pawnTable.getPassed();
+        } else {
+            int pawns = evaluatePawns(pos);
+            passedPawns = passedPawns(pos, Position.WHITE) | passedPawns(pos, Position.BLACK);
+            if (pawnTable != null)
+                pawnTable.store(pos.getPawnKey(), pawns, passedPawns);
+            score += pawns;
+        }
+
+        int whiteKing = pos.getKingSquare(Position.WHITE);
+        int blackKing = pos.getKingSquare(Position.BLACK);
+        if (pawnTable != null && pawnTable.hasShelter(whiteKing, blackKing)) {
+            score += pawnTable.getShelter();
+        } else {
+            int shelter = evaluateKing(pos, Position.WHITE) - evaluateKing(pos, Position.BLACK);
+            if (pawnTable != null)
+                pawnTable.storeShelter(whiteKing, blackKing, shelter);
+            score += shelter;
+        }
+
+        score += evaluatePassers(pos, passedPawns);
+        score += pos.getSideToMove() == Position.WHITE ? tempo : -tempo;
+
+        int blended = taper(score, phase(pos));
+        return pos.getSideToMove() == Position.WHITE ? blended : -blended;
+    }
+
+    /**
+     * Returns how much non-pawn material is left, from 0 (pawn endgame) to
+     * {@link #MAX_PHASE}.
+     */
+    public static int phase(Position pos) {
+        int phase = 0;
+        for (int type = Position.KNIGHT; type < Position.KING; type++) {
+            phase += phaseWeights[type] * Long.bitCount(pos.getPieces(Position.WHITE, type)
+                    | pos.getPieces(Position.BLACK, type));
+        }
+        return Math.min(phase, MAX_PHASE);
+    }
+
+    // Blends the middlegame and endgame halves by phase
+    private static int taper(int score, int phase) {
+        return (mg(score) * phase + eg(score) * (MAX_PHASE - phase)) / MAX_PHASE;
+    }
+
+    /**
+     * Scores the pawn structure of both sides, from White's point of view.
+     */
+    static int evaluatePawns(Position pos) {
+        return evaluatePawns(pos, Position.WHITE) - evaluatePawns(pos, Position.BLACK);
+    }
+
+    private static int evaluatePawns(Position pos, int us) {
+        int them = us ^ 1;
+        long ours = pos.getPieces(us, Position.PAWN);
+        long theirs = pos.getPieces(them, Position.PAWN);
+        long theirAttacks = pawnAttacks(theirs, them);
+        int up = us == Position.WHITE ? 8 : -8;
+        int score = 0;
+
+        long pawns = ours;
+        while (pawns != 0) {
+            int sq = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            int file = Position.fileOf(sq);
+
+            if ((FORWARD_FILE[us][sq] & ours) != 0)
+                score += doubled; // Counted for each pawn with another one in front
+            if ((ADJACENT_FILES[file] & ours) == 0)
+                score += isolated;
+            else if ((SUPPORT_SPAN[us][sq] & ours) == 0 && ((theirAttacks >>> (sq + up)) & 1L) != 0)
+                score += backward; // Cannot be defended by a pawn and cannot safely advance
+        }
+
+        long passers = passedPawns(pos, us);
+        while (passers != 0) {
+            int sq = Long.numberOfTrailingZeros(passers);
+            passers &= passers - 1;
+            score += passed[relativeRank(us, sq)];
+        }
+        return score;
+    }
+
+    /**
+     * Returns the passed pawns of one side: no enemy pawn in front on the
+     * same or an adjacent file, and no own pawn in front on the same file.
+     */
+    static long passedPawns(Position pos, int us) {
+        long ours = pos.getPieces(us, Position.PAWN);
+        long theirs = pos.getPieces(us ^ 1, Position.PAWN);
+        long passers = 0L;
+        long pawns = ours;
+        while (pawns != 0) {
+            int sq = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            if ((PASSED_SPAN[us][sq] & theirs) == 0 && (FORWARD_FILE[us][sq] & ours) == 0)
+                passers |= 1L << sq;
+        }
+        return passers;
+    }
+
+    /**
+     * In the endgame a passed pawn is worth more the further the enemy king
+     * is from the square in front of it, and the closer its own king is. The
+     * term grows as the pawn advances.
+     */
+    private static int evaluatePassers(Position pos, long passedPawns) {
+        int eg = 0;
+        for (int us = Position.WHITE; us <= Position.BLACK; us++) {
+            long passers = passedPawns & pos.getPieces(us, Position.PAWN);
+            int ownKing = pos.getKingSquare(us);
+            int enemyKing = pos.getKingSquare(us ^ 1);
+            int term = 0;
+            while (passers != 0) {
+                int sq = Long.numberOfTrailingZeros(passers);
+                passers &= passers - 1;
+                int stop = sq + (us == Position.WHITE ? 8 : -8);
+                int weight = relativeRank(us, sq) - 1; // 0 on the pawn's starting rank
+                term += weight * (distance(enemyKing, stop) * passedEnemyKing - distance(ownKing, stop) * passedOwnKing);
+            }
+            eg += us == Position.WHITE ? term : -term;
+        }
+        return score(0, eg);
+    }
+
+    private static int relativeRank(int color, int square) {
+        return color == Position.WHITE ? Position.rankOf(square) : 7 - Position.rankOf(square);
+    }
+
+    // Number of king moves between two squares
+    private static int distance(int a, int b) {
+        return Math.max(Math.abs(Position.fileOf(a) - Position.fileOf(b)),
+                Math.abs(Position.rankOf(a) - Position.rankOf(b)));
+    }
+
+    /**
+     * Scores mobility for one side's knights, bishops, rooks and queens, the
+     * bishop pair, and the danger the pieces create around the enemy king.
+     */
+    static int evaluatePieces(Position pos, int us) {
+        int them = us ^ 1;
+        long occupied = pos.getOccupied();
+        long area = ~pos.getOccupancy(us) & ~pawnAttacks(pos.getPieces(them, Position.PAWN), them);
+        int enemyKing = pos.getKingSquare(them);
+        long kingZone = Bitboards.kingAttacks(enemyKing) | (1L << enemyKing);
+        int score = 0;
+        int attackUnits = 0;
+        int attackers = 0;
+
+        for (int type = Position.KNIGHT; type <= Position.QUEEN; type++) {
+            long pieces = pos.getPieces(us, type);
+            while (pieces != 0) {
+                int sq = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                long attacks = switch (type) {
+                    case Position.KNIGHT -> Bitboards.knightAttacks(sq);
+                    case Position.BISHOP -> Bitboards.bishopAttacks(sq, occupied);
+                    case Position.ROOK -> Bitboards.rookAttacks(sq, occupied);
+                    default -> Bitboards.queenAttacks(sq, occupied);
+                };
+                score += mobility[type] * (Long.bitCount(attacks & area) - mobilityCenter[type]);
+
+                long zoneAttacks = attacks & kingZone;
+                if (zoneAttacks != 0) {
+                    attackers++;
+                    attackUnits += kingAttack[type] * Long.bitCount(zoneAttacks);
+                }
+            }
+        }
+
+        if (Long.bitCount(pos.getPieces(us, Position.BISHOP)) >= 2)
+            score += bishopPair;
+
+        // A lone attacker is rarely dangerous; more of them are, and quickly so
+        if (attackers >= 2)
+            score += score(Math.min(attackUnits * attackUnits * dangerScale / 16, dangerMax), 0);
+        return score;
+    }
+
+    /**
+     * Scores the pawns shielding one side's king: own pawns on the king's
+     * file and the files next to it, one or two ranks in front.
+     */
+    static int evaluateKing(Position pos, int us) {
+        int king = pos.getKingSquare(us);
+        int rank = Position.rankOf(king);
+        long nearRanks; // The two ranks in front of the king
+        if (us == Position.WHITE)
+            nearRanks = rank < 7 ? 0xFFFFL << (8 * (rank + 1)) : 0L;
+        else
+            nearRanks = rank > 0 ? 0xFFFF000000000000L >>> (8 * (8 - rank)) : 0L;
+        long shelter = PASSED_SPAN[us][king] & nearRanks & pos.getPieces(us, Position.PAWN);
+        return shield * Long.bitCount(shelter);
+    }
+
+    // Squares attacked by a set of pawns of the given colour
+    private static long pawnAttacks(long pawns, int color) {
+        if (color == Position.WHITE)
+            return ((pawns << 7) & ~Bitboards.FILE_H) | ((pawns << 9) & ~Bitboards.FILE_A);
+        return ((pawns >>> 9) & ~Bitboards.FILE_H) | ((pawns >>> 7) & ~Bitboards.FILE_A);
+    }
+
+    // ------------------ Command Line ------------------
+
+    public static void main(String[] args) throws IOException {
+        StringBuilder fen = new StringBuilder();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--dump")) {
+                EvalWeights.defaults().write(System.out);
+                return;
+            } else if (args[i].equals("--weights")) {
+                loadWeights(Path.of(args[++i]));
+            } else {
+                fen.append(args[i]).append(' ');
+            }
+        }
+
+        Position pos = fen.length() > 0 ? Position.fromFEN(fen.toString()) : Position.startPosition();
+        int phase = phase(pos);
+        System.out.println("Phase: " + phase + "/" + MAX_PHASE);
+        printTerm("Material + PST", pos.getPsqt(), phase);
+        printTerm("Pawns", evaluatePawns(pos), phase);
+        printTerm("Pieces (white)", evaluatePieces(pos, Position.WHITE), phase);
+        printTerm("Pieces (black)", -evaluatePieces(pos, Position.BLACK), phase);
+        printTerm("King shield", evaluateKing(pos, Position.WHITE) - evaluateKing(pos, Position.BLACK), phase);
+        printTerm("Passer kings", evaluatePassers(pos,
+                passedPawns(pos, Position.WHITE) | passedPawns(pos, Position.BLACK)), phase);
+        System.out.println("Total (side to move): " + evaluate(pos));
+    }
+
+    private static void printTerm(String name, int score, int phase) {
+        System.out.printf("%-16s mg %5d  eg %5d  tapered %5d%n", name, mg(score), eg(score), taper(score, phase));
+    }
+}
@@ -0,0 +1,34 @@
+/**
+ * Evaluator is what the search uses to score positions. It is told about
+ * every move the search makes and takes back, so an implementation can keep
+ * incremental state in step with the position (see {@link NnueEvaluator}).
+ *
+ * An evaluator belongs to one search thread.
+ */
+public interface Evaluator {
+    /**
+     * Sets up for a new search from the given root position.
+     */
+    void reset(Position pos);
+
+    /**
+     * Called when the search plays a move, before or after the position
+     * itself is updated.
+     */
+    void makeMove(int move);
+
+    /**
+     * Called when the search passes the move to the opponent without moving.
+     */
+    void makeNullMove();
+
+    /**
+     * Called when the search takes back the last move or null move.
+     */
+    void unmakeMove();
+
+    /**
+     * Returns the score of the position for the side to move, in centipawns.
+     */
+    int evaluate(Position pos);
+}
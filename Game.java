@@ -1,3 +1,6 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
 import javafx.application.Application;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
@@ -11,6 +14,9 @@ import javafx.stage.Stage;
  * "Play".
  */
 public class Game extends Application {
+    private static PolyglotBook book; // Opening book from the command line, or null
+    private static Tablebase tablebase; // Endgame tables from the command line, or null
+
     private Stage primaryStage;
 
     /**
@@ -52,17 +58,22 @@ public class Game extends Application {
      */
     private void startGame(String difficulty) {
         // Create the player (assumed white)
-        Player player = new Player("User", false); // false = White
+        Player player = new Player("User", true); // true = White
 
-        // Create the AI opponent with chosen difficulty
+        // Create the AI opponent with chosen difficulty; Easy plays without the book or tables
         AI ai = new AI(difficulty);
+        if (!difficulty.equals("Easy")) {
+            ai.setBook(book);
+            ai.setTablebase(tablebase);
+        }
 
         // Create the board (handles layout, piece setup, etc.)
         Board board = new Board(player, ai);
 
         // Output basic game info to console
         System.out.println(player.getName() + " is playing as " + (player.isWhite() ? "White" : "Black"));
-        System.out.println(ai.makeMove(board)); // AI makes an initial move (if implemented)
+        if (!player.isWhite())
+            board.requestAIMove(); // AI opens the game when it plays White
 
         // Display the board on a new scene
         primaryStage.setScene(new Scene(board.getBoardLayout(), 640, 640));
@@ -71,9 +82,24 @@ public class Game extends Application {
     }
 
     /**
-     * Main method launches the JavaFX application.
+     * Main method launches the JavaFX application. An optional
+     * "--weights FILE" argument loads evaluation weights (see EvalWeights)
+     * before the first game, and "--nnue FILE" loads a network (see
+     * NnueNetwork) for the Hard computer opponent. "--book FILE" opens a
+     * Polyglot opening book for the Medium and Hard opponents.
+     * "--tablebases DIR" opens the endgame tables made by TablebaseGenerator.
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals("--weights"))
+                Evaluation.loadWeights(Path.of(args[i + 1]));
+            else if (args[i].equals("--nnue"))
+                AI.setNetwork(NnueNetwork.load(Path.of(args[i + 1])));
+            else if (args[i].equals("--book"))
+                book = PolyglotBook.open(Path.of(args[i + 1]));
+            else if (args[i].equals("--tablebases"))
+                tablebase = Tablebase.open(Path.of(args[i + 1]));
+        }
         launch(args);
     }
 }
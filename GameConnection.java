@@ -0,0 +1,129 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GameConnection is one client socket of the {@link GameServer} and the games
+ * it has opened. It splits incoming bytes into lines and queues outgoing
+ * lines, writing as much as the socket takes and asking the selector for
+ * write readiness when the rest has to wait. Only used on the I/O thread.
+ */
+public class GameConnection {
+    public static final int MAX_LINE_BYTES = 4096;
+
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final ByteBuffer input = ByteBuffer.allocate(MAX_LINE_BYTES);
+    private final ArrayDeque<ByteBuffer> output = new ArrayDeque<>();
+    private final Map<Integer, GameSession> sessions = new HashMap<>();
+    private int nextId = 1;
+
+    public GameConnection(SocketChannel channel, SelectionKey key) {
+        this.channel = channel;
+        this.key = key;
+    }
+
+    /**
+     * Reads what has arrived and returns the complete lines, without their
+     * line endings, or null once the client has closed the connection.
+     *
+     * @throws IOException if the socket fails or a line is too long
+     */
+    public List<String> read() throws IOException {
+        if (channel.read(input) < 0)
+            return null;
+        List<String> lines = new ArrayList<>();
+        input.flip();
+        int start = 0;
+        for (int i = 0; i < input.limit(); i++) {
+            if (input.get(i) == '\n') {
+                int end = i > start && input.get(i - 1) == '\r' ? i - 1 : i;
+                lines.add(new String(input.array(), start, end - start, StandardCharsets.US_ASCII));
+                start = i + 1;
+            }
+        }
+        input.position(start);
+        input.compact();
+        if (!input.hasRemaining())
+            throw new IOException("Line longer than " + MAX_LINE_BYTES + " bytes");
+        return lines;
+    }
+
+    /**
+     * Queues a line and writes as much of the queue as the socket takes.
+     */
+    public void send(String line) throws IOException {
+        output.add(ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.US_ASCII)));
+        flush();
+    }
+
+    /**
+     * Writes queued output until the socket would block, then waits for
+     * write readiness only if something is left.
+     */
+    public void flush() throws IOException {
+        while (!output.isEmpty()) {
+            ByteBuffer buffer = output.peek();
+            channel.write(buffer);
+            if (buffer.hasRemaining())
+                break;
+            output.poll();
+        }
+        int ops = output.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE;
+        if (key.interestOps() != ops)
+            key.interestOps(ops);
+    }
+
+    /**
+     * Opens a game with the next free id.
+     */
+    public GameSession newSession(String fen, int engineColor, int depth, int moveTimeMillis) {
+        GameSession session = new GameSession(nextId++, this, fen, engineColor, depth, moveTimeMillis);
+        sessions.put(session.getId(), session);
+        return session;
+    }
+
+    /**
+     * Returns the game with the given id.
+     *
+     * @throws IllegalArgumentException if there is none
+     */
+    public GameSession getSession(int id) {
+        GameSession session = sessions.get(id);
+        if (session == null)
+            throw new IllegalArgumentException("No game " + id);
+        return session;
+    }
+
+    public void removeSession(GameSession session) {
+        sessions.remove(session.getId());
+        session.close();
+    }
+
+    public Collection<GameSession> getSessions() {
+        return sessions.values();
+    }
+
+    /**
+     * Closes the socket and every game on it.
+     */
+    public void close() {
+        for (GameSession session : sessions.values())
+            session.close();
+        sessions.clear();
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Already gone
+        }
+    }
+}
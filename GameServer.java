@@ -0,0 +1,422 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * GameServer hosts many games against the engine at once over a line
+ * protocol on a local socket. One I/O thread owns every connection and game:
+ * it reads commands, checks and plays the person's moves and acknowledges
+ * them straight away. The engine's replies are searched on a fixed pool of
+ * worker threads, each with its own {@link AI}. By default there is one
+ * worker per core but one, since a search is CPU bound and the I/O thread
+ * needs a core of its own to acknowledge moves within a few milliseconds;
+ * with a worker on every core, acknowledgements wait for the scheduler.
+ * Finished replies are handed back to the I/O thread through a queue. A game
+ * waits for at most one reply, so the pool's queue never holds more tasks
+ * than there are games.
+ *
+ * Commands, one per line, and their answers:
+ *
+ *   new [white|black] [depth N] [movetime MS] [fen FEN]  ->  game ID FEN
+ *   move ID MOVE                                          ->  ok ID MOVE
+ *   fen ID                                                ->  fen ID FEN
+ *   resign ID                                             ->  end ID RESULT REASON
+ *   close ID                                              ->  closed ID
+ *
+ * The color is the person's (White by default); moves are in UCI notation.
+ * The engine's moves follow as "move ID MOVE" and the end of a game as
+ * "end ID RESULT REASON", e.g. "end 3 1-0 checkmate". Errors are answered
+ * with "error MESSAGE". Games belong to their connection and are dropped
+ * when it closes.
+ */
+public class GameServer {
+    public static final int DEFAULT_PORT = 7000;
+    public static final int DEFAULT_MOVE_TIME_MILLIS = 100;
+
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final ExecutorService workers;
+    private final ThreadLocal<AI> engines;
+    private final ConcurrentLinkedQueue<GameSession> replies = new ConcurrentLinkedQueue<>();
+    private final Position scratch = new Position(); // Boards are rebuilt here on the I/O thread
+    private volatile boolean running = true;
+    private int sessionCount;
+
+    /**
+     * Opens the server socket on the loopback address. Port 0 picks a free
+     * port (see {@link #getPort}).
+     *
+     * @param workerCount threads searching the engine's moves
+     * @param hashMb      transposition table size of each worker
+     */
+    public GameServer(int port, int workerCount, int hashMb) throws IOException {
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+
+        workers = Executors.newFixedThreadPool(workerCount, task -> {
+            Thread thread = new Thread(task, "game-worker");
+            thread.setDaemon(true); // Do not keep the JVM alive
+            return thread;
+        });
+        engines = ThreadLocal.withInitial(() -> {
+            AI ai = new AI("Hard"); // Uses the network when there is one; the session sets the limits
+            ai.setHashSize(hashMb);
+            ai.setListener((depth, score, nodes, millis, pv, pvLength) -> { }); // Quiet
+            return ai;
+        });
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Returns the number of open games. Only exact on the I/O thread.
+     */
+    public int getSessionCount() {
+        return sessionCount;
+    }
+
+    /**
+     * Serves connections on the calling thread until {@link #close} is called.
+     */
+    public void run() throws IOException {
+        while (running) {
+            selector.select();
+            GameSession session;
+            while ((session = replies.poll()) != null)
+                playReply(session);
+
+            for (SelectionKey key : selector.selectedKeys()) {
+                if (!key.isValid())
+                    continue;
+                if (key.isAcceptable())
+                    accept();
+                else
+                    serve(key);
+            }
+            selector.selectedKeys().clear();
+        }
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof GameConnection connection)
+                connection.close();
+        }
+        server.close();
+        selector.close();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Stops the server from another thread.
+     */
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    // ------------------ I/O ------------------
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null)
+            return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true); // Acknowledgements are small and must not wait
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new GameConnection(channel, key));
+    }
+
+    private void serve(SelectionKey key) {
+        GameConnection connection = (GameConnection) key.attachment();
+        try {
+            if (key.isWritable())
+                connection.flush();
+            if (key.isValid() && key.isReadable()) {
+                List<String> lines = connection.read();
+                if (lines == null) {
+                    disconnect(connection);
+                    return;
+                }
+                for (String line : lines)
+                    execute(connection, line.trim());
+            }
+        } catch (IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    private void disconnect(GameConnection connection) {
+        sessionCount -= connection.getSessions().size();
+        connection.close();
+    }
+
+    // ------------------ Commands ------------------
+
+    private void execute(GameConnection connection, String line) throws IOException {
+        String[] tokens = line.split("\\s+");
+        try {
+            switch (tokens[0]) {
+                case "new" -> newGame(connection, tokens);
+                case "move" -> playMove(connection.getSession(parseInt(tokens, 1)), tokens);
+                case "fen" -> {
+                    GameSession session = connection.getSession(parseInt(tokens, 1));
+                    session.restore(scratch);
+                    connection.send("fen " + session.getId() + " " + scratch.toFEN());
+                }
+                case "resign" -> {
+                    GameSession session = connection.getSession(parseInt(tokens, 1));
+                    if (session.getState() == GameSession.OVER)
+                        throw new IllegalArgumentException("Game " + session.getId() + " is over");
+                    endGame(session, session.resignation());
+                }
+                case "close" -> {
+                    GameSession session = connection.getSession(parseInt(tokens, 1));
+                    connection.removeSession(session);
+                    sessionCount--;
+                    connection.send("closed " + session.getId());
+                }
+                case "" -> { } // Blank line
+                default -> throw new IllegalArgumentException("Unknown command: " + tokens[0]);
+            }
+        } catch (IllegalArgumentException e) {
+            connection.send("error " + e.getMessage());
+        }
+    }
+
+    private void newGame(GameConnection connection, String[] tokens) throws IOException {
+        int personColor = Position.WHITE;
+        int depth = 0;
+        int moveTime = DEFAULT_MOVE_TIME_MILLIS;
+        String fen = null;
+        for (int i = 1; i < tokens.length; i++) {
+            switch (tokens[i]) {
+                case "white" -> personColor = Position.WHITE;
+                case "black" -> personColor = Position.BLACK;
+                case "depth" -> depth = checkRange(parseInt(tokens, ++i), 0, Search.MAX_PLY - 1);
+                case "movetime" -> moveTime = checkRange(parseInt(tokens, ++i), 0, Integer.MAX_VALUE);
+                case "fen" -> {
+                    fen = String.join(" ", Arrays.copyOfRange(tokens, i + 1, tokens.length));
+                    i = tokens.length;
+                }
+                default -> throw new IllegalArgumentException("Unknown option: " + tokens[i]);
+            }
+        }
+        if (depth == 0 && moveTime == 0)
+            throw new IllegalArgumentException("The engine needs a depth or a move time");
+        if (fen != null)
+            Position.fromFEN(fen); // Rejects a bad FEN before the game exists
+
+        GameSession session = connection.newSession(fen, personColor ^ 1, depth, moveTime);
+        sessionCount++;
+        session.restore(scratch);
+        connection.send("game " + session.getId() + " " + scratch.toFEN());
+        continueGame(session);
+    }
+
+    private void playMove(GameSession session, String[] tokens) throws IOException {
+        if (tokens.length < 3)
+            throw new IllegalArgumentException("Expected move ID MOVE");
+        if (session.getState() == GameSession.OVER)
+            throw new IllegalArgumentException("Game " + session.getId() + " is over");
+        session.restore(scratch);
+        if (session.getState() == GameSession.THINKING || session.isEngineToMove(scratch))
+            throw new IllegalArgumentException("Game " + session.getId() + " is waiting for the engine");
+
+        int move = UCI.parseMove(scratch, tokens[2]);
+        session.addMove(move);
+        scratch.makeMove(move);
+        session.getConnection().send("ok " + session.getId() + " " + tokens[2]);
+        continueGame(session);
+    }
+
+    /**
+     * Ends the game if the position in scratch is over, otherwise hands the
+     * engine's turn to a worker.
+     */
+    private void continueGame(GameSession session) throws IOException {
+        String outcome = MoveGenerator.outcome(scratch);
+        if (outcome != null) {
+            endGame(session, outcome);
+        } else if (session.isEngineToMove(scratch)) {
+            session.setState(GameSession.THINKING);
+            workers.execute(() -> think(session));
+        }
+    }
+
+    private void endGame(GameSession session, String outcome) throws IOException {
+        session.setState(GameSession.OVER);
+        session.getConnection().send("end " + session.getId() + " " + outcome);
+    }
+
+    // Plays a reply handed back by a worker
+    private void playReply(GameSession session) {
+        if (session.isClosed() || session.getState() == GameSession.OVER)
+            return; // Closed or resigned while the engine was thinking
+        try {
+            int move = session.getReply();
+            if (move == Moves.NONE) {
+                endGame(session, "* engine-failure");
+                return;
+            }
+            session.setState(GameSession.PLAYING);
+            session.restore(scratch);
+            scratch.makeMove(move);
+            session.addMove(move);
+            session.getConnection().send("move " + session.getId() + " " + Moves.toUCI(move));
+            continueGame(session);
+        } catch (IOException e) {
+            disconnect(session.getConnection());
+        }
+    }
+
+    // ------------------ Workers ------------------
+
+    private void think(GameSession session) {
+        try {
+            Position pos = new Position();
+            session.restore(pos);
+            session.setReply(engines.get().chooseMove(pos, session.getLimits()));
+        } finally {
+            // Hand the game back even if the search failed, leaving Moves.NONE
+            replies.add(session);
+            selector.wakeup();
+        }
+    }
+
+    // ------------------ Helpers ------------------
+
+    private static int parseInt(String[] tokens, int i) {
+        if (i >= tokens.length)
+            throw new IllegalArgumentException("Missing number after " + tokens[i - 1]);
+        try {
+            return Integer.parseInt(tokens[i]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + tokens[i]);
+        }
+    }
+
+    private static int checkRange(int value, int min, int max) {
+        if (value < min || value > max)
+            throw new IllegalArgumentException("Value must be between " + min + " and " + max + ": " + value);
+        return value;
+    }
+
+    // ------------------ Benchmark ------------------
+
+    /**
+     * Runs the server, or with "--bench N" measures it over loopback: opens
+     * N idle games and reports the heap they take, then plays one move in
+     * each of a sample of games, one at a time, and reports the percentiles
+     * of the time from sending the move to its acknowledgement while the
+     * workers search. Other options: "--port P", "--workers N" (default: one
+     * fewer than the cores, at least one), "--hash MB" per worker (default 16), "--nnue FILE".
+     */
+    public static void main(String[] args) throws Exception {
+        Bitboards.init();
+        int port = DEFAULT_PORT;
+        int workerCount = Math.max(1, Runtime.getRuntime().availableProcessors() - 1); // Leaves the I/O thread a core
+        int hashMb = Search.DEFAULT_HASH_MB;
+        int benchSessions = 0;
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals("--port"))
+                port = Integer.parseInt(args[i + 1]);
+            else if (args[i].equals("--workers"))
+                workerCount = Integer.parseInt(args[i + 1]);
+            else if (args[i].equals("--hash"))
+                hashMb = Integer.parseInt(args[i + 1]);
+            else if (args[i].equals("--nnue"))
+                AI.setNetwork(NnueNetwork.load(Path.of(args[i + 1])));
+            else if (args[i].equals("--bench"))
+                benchSessions = Integer.parseInt(args[i + 1]);
+        }
+
+        GameServer server = new GameServer(benchSessions > 0 ? 0 : port, workerCount, hashMb);
+        if (benchSessions == 0) {
+            System.out.println("Listening on port " + server.getPort());
+            server.run();
+            return;
+        }
+        Thread io = new Thread(() -> {
+            try {
+                server.run();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "game-io");
+        io.start();
+        bench(server, benchSessions);
+        server.close();
+        io.join();
+    }
+
+    private static void bench(GameServer server, int sessions) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            socket.setTcpNoDelay(true);
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.US_ASCII));
+
+            long heapBefore = usedHeap();
+            long start = System.nanoTime();
+            byte[] command = "new white movetime 20\n".getBytes(StandardCharsets.US_ASCII);
+            for (int sent = 0; sent < sessions; ) {
+                int batch = Math.min(1000, sessions - sent); // Bounded so neither side's buffers fill up
+                for (int i = 0; i < batch; i++)
+                    out.write(command);
+                out.flush();
+                for (int i = 0; i < batch; i++)
+                    in.readLine();
+                sent += batch;
+            }
+            long openMillis = (System.nanoTime() - start) / 1_000_000;
+            long heap = usedHeap() - heapBefore;
+            System.out.printf("%d idle games opened in %d ms: %.1f MB heap, %d bytes per game%n", sessions,
+                    openMillis, heap / 1048576.0, heap / sessions);
+
+            // Each acknowledgement is timed while the engine searches the previous games' replies
+            int samples = Math.min(sessions, 1000);
+            long[] micros = new long[samples];
+            for (int i = 0; i < samples; i++) {
+                int id = 1 + (int) ((long) i * sessions / samples);
+                String expected = "ok " + id + " ";
+                long sentAt = System.nanoTime();
+                out.write(("move " + id + " e2e4\n").getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                String line;
+                while ((line = in.readLine()) != null && !line.startsWith(expected)) {
+                    // Engine replies to earlier games
+                }
+                micros[i] = (System.nanoTime() - sentAt) / 1000;
+            }
+            Arrays.sort(micros);
+            System.out.printf("move acknowledgement over %d games: p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                    samples, micros[samples / 2] / 1000.0, micros[samples * 99 / 100] / 1000.0,
+                    micros[samples - 1] / 1000.0);
+        }
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,128 @@
+import java.util.Arrays;
+
+/**
+ * GameSession is one game hosted by the {@link GameServer}: a person against
+ * the engine. To keep thousands of idle games cheap it stores no board, only
+ * the start position (null for the standard one) and the moves played, and
+ * rebuilds the board on demand by replaying them, which takes microseconds.
+ * An idle session costs about a hundred bytes, where a {@link Position} with
+ * its undo stack costs some 17 KB.
+ *
+ * Sessions are only changed on the server's I/O thread. While the engine is
+ * thinking a worker thread reads the moves, which do not change until its
+ * reply has been handed back.
+ */
+public class GameSession {
+    // Session states
+    public static final int PLAYING = 0; // Waiting for the person's move
+    public static final int THINKING = 1; // The engine is choosing a move
+    public static final int OVER = 2;
+
+    private static final int INITIAL_MOVES = 8; // Grown by doubling
+
+    private final int id;
+    private final GameConnection connection;
+    private final String fen; // Start position, null for the standard one
+    private final byte engineColor;
+    private final byte depth; // 0 for no depth limit
+    private final int moveTimeMillis;
+    private int[] moves = new int[INITIAL_MOVES];
+    private int moveCount;
+    private int state = PLAYING;
+    private int reply = Moves.NONE; // The engine's move, handed from a worker to the I/O thread
+    private boolean closed;
+
+    public GameSession(int id, GameConnection connection, String fen, int engineColor, int depth,
+            int moveTimeMillis) {
+        this.id = id;
+        this.connection = connection;
+        this.fen = fen;
+        this.engineColor = (byte) engineColor;
+        this.depth = (byte) depth;
+        this.moveTimeMillis = moveTimeMillis;
+    }
+
+    /**
+     * Sets up a position as it stands in this game, reusing its storage.
+     */
+    public void restore(Position pos) {
+        if (fen == null)
+            pos.setStartPosition();
+        else
+            pos.setFEN(fen);
+        for (int i = 0; i < moveCount; i++)
+            pos.makeMove(moves[i]);
+    }
+
+    /**
+     * Records a move, which must be legal in the current position.
+     */
+    public void addMove(int move) {
+        if (moveCount == moves.length)
+            moves = Arrays.copyOf(moves, moves.length * 2);
+        moves[moveCount++] = move;
+    }
+
+    /**
+     * Returns the engine's search budget for each move.
+     */
+    public SearchLimits getLimits() {
+        return new SearchLimits(depth, moveTimeMillis, 0);
+    }
+
+    public boolean isEngineToMove(Position pos) {
+        return pos.getSideToMove() == engineColor;
+    }
+
+    /**
+     * Returns the result of the person resigning, e.g. "0-1 resignation" if
+     * the person plays White.
+     */
+    public String resignation() {
+        return (engineColor == Position.WHITE ? "1-0" : "0-1") + " resignation";
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public GameConnection getConnection() {
+        return connection;
+    }
+
+    public int getEngineColor() {
+        return engineColor;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    public int getState() {
+        return state;
+    }
+
+    public void setState(int state) {
+        this.state = state;
+    }
+
+    public int getReply() {
+        return reply;
+    }
+
+    public void setReply(int reply) {
+        this.reply = reply;
+    }
+
+    /**
+     * Whether the session has been closed, so a reply still being computed
+     * for it must be dropped.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public void close() {
+        closed = true;
+    }
+}
@@ -1,32 +1,33 @@
+/**
+ * A Move wraps one encoded move (see {@link Moves}) together with the GUI
+ * pieces it refers to, for use by the JavaFX board.
+ */
 public class Move {
+    private final int code; // Packed form of this move
     private final String fromPosition; // e.g., "E2"
     private final String toPosition;   // e.g., "E4"
     private final Piece movedPiece;
     private final Piece capturedPiece; // null if no capture
-    private final boolean isEnPassant;
-    private final boolean isCastling;
-    private final boolean isPromotion;
-
-    public Move(String fromPosition, String toPosition, Piece movedPiece,
-                Piece capturedPiece, boolean isEnPassant, boolean isCastling, boolean isPromotion) {
-        this.fromPosition = fromPosition;
-        this.toPosition = toPosition;
-        this.movedPiece = movedPiece;
-        this.capturedPiece = capturedPiece;
-        this.isEnPassant = isEnPassant;
-        this.isCastling = isCastling;
-        this.isPromotion = isPromotion;
-    }
-
-    public Move(String fromPosition, String toPosition, Piece movedPiece,
-                Piece capturedPiece) {
-        this.fromPosition = fromPosition;
-        this.toPosition = toPosition;
-        this.movedPiece = movedPiece;
-        this.capturedPiece = capturedPiece;
-        this.isEnPassant = false;
-        this.isCastling = false;
-        this.isPromotion = false;
+
+    /**
+     * Wraps an encoded move, looking up the pieces involved on the board it
+     * is about to be played on.
+     */
+    public Move(int code, Board board) {
+        int from = Moves.from(code), to = Moves.to(code);
+        int capturedSquare = Moves.isEnPassant(code) ? Position.square(Position.fileOf(to), Position.rankOf(from)) : to;
+
+        this.code = code;
+        this.fromPosition = board.getChessCoordinate(Position.rankOf(from), Position.fileOf(from));
+        this.toPosition = board.getChessCoordinate(Position.rankOf(to), Position.fileOf(to));
+        this.movedPiece = board.getPieceAt(Position.fileOf(from), Position.rankOf(from));
+        this.capturedPiece = Moves.isCapture(code)
+                ? board.getPieceAt(Position.fileOf(capturedSquare), Position.rankOf(capturedSquare))
+                : null;
+    }
+
+    public int getCode() {
+        return code;
     }
 
     public String getFromPosition() {
@@ -46,14 +47,19 @@ public class Move {
     }
 
     public boolean isEnPassant() {
-        return isEnPassant;
+        return Moves.isEnPassant(code);
     }
 
     public boolean isCastling() {
-        return isCastling;
+        return Moves.isCastling(code);
     }
 
     public boolean isPromotion() {
-        return isPromotion;
-    } 
-}
\ No newline at end of file
+        return Moves.isPromotion(code);
+    }
+
+    @Override
+    public String toString() {
+        return Moves.toUCI(code);
+    }
+}
@@ -0,0 +1,380 @@
+/**
+ * MoveGenerator produces pseudo-legal or fully legal moves for a
+ * {@link Position} using the precomputed tables in {@link Bitboards}. Moves
+ * are written as encoded ints into a caller-supplied buffer, so generating
+ * moves never allocates.
+ *
+ * Moves use the packed encoding described in {@link Moves}.
+ */
+public final class MoveGenerator {
+    public static final int MAX_MOVES = 256; // Enough for any legal chess position
+
+    private static final int NONE = Position.NO_PIECE;
+
+    // Kinds of moves to generate
+    private static final int NOISY = 1; // Captures and promotions
+    private static final int QUIET = 2; // Everything else
+    private static final int ALL = NOISY | QUIET;
+
+    // Scratch space for isLegal, one per thread since searches run in parallel
+    private static final ThreadLocal<int[]> LEGALITY_BUFFER = ThreadLocal.withInitial(() -> new int[MAX_MOVES]);
+
+    private MoveGenerator() {
+    }
+
+    // ------------------ Pseudo-Legal Generation ------------------
+
+    /**
+     * Writes all pseudo-legal moves for the side to move into the buffer
+     * starting at index 0. Returns the number of moves written.
+     */
+    public static int generate(Position pos, int[] moves) {
+        return generate(pos, moves, 0);
+    }
+
+    /**
+     * Writes all pseudo-legal moves for the side to move into the buffer
+     * starting at the given offset. Returns the index after the last move, so
+     * callers can stack move lists for several plies in one array.
+     */
+    public static int generate(Position pos, int[] moves, int offset) {
+        int us = pos.getSideToMove();
+        long targets = ~pos.getOccupancy(us);
+        long occupied = pos.getOccupied();
+        int n = offset;
+
+        n = generatePawnMoves(pos, us, ~0L, 0L, false, ALL, ~0L, moves, n);
+
+        int piece = Position.makePiece(us, Position.KNIGHT);
+        long knights = pos.getPieces(piece);
+        while (knights != 0) {
+            int from = Long.numberOfTrailingZeros(knights);
+            knights &= knights - 1;
+            n = addMoves(pos, from, piece, Bitboards.knightAttacks(from) & targets, moves, n);
+        }
+
+        for (int type = Position.BISHOP; type <= Position.QUEEN; type++) {
+            piece = Position.makePiece(us, type);
+            long sliders = pos.getPieces(piece);
+            while (sliders != 0) {
+                int from = Long.numberOfTrailingZeros(sliders);
+                sliders &= sliders - 1;
+                n = addMoves(pos, from, piece, sliderAttacks(type, from, occupied) & targets, moves, n);
+            }
+        }
+
+        int king = pos.getKingSquare(us);
+        n = addMoves(pos, king, Position.makePiece(us, Position.KING), Bitboards.kingAttacks(king) & targets,
+                moves, n);
+        n = generateCastling(pos, us, false, moves, n);
+
+        return n;
+    }
+
+    // ------------------ Legal Generation ------------------
+
+    /**
+     * Writes all legal moves for the side to move into the buffer starting at
+     * index 0. Returns the number of moves written.
+     */
+    public static int generateLegal(Position pos, int[] moves) {
+        return generateLegal(pos, moves, 0);
+    }
+
+    /**
+     * Writes all legal moves for the side to move into the buffer starting at
+     * the given offset and returns the index after the last move.
+     */
+    public static int generateLegal(Position pos, int[] moves, int offset) {
+        return generateLegal(pos, moves, offset, ALL, ~0L);
+    }
+
+    /**
+     * Writes the legal captures and promotions (the moves that are not
+     * {@link Moves#isQuiet quiet}) and returns the index after the last move.
+     */
+    public static int generateLegalNoisy(Position pos, int[] moves, int offset) {
+        return generateLegal(pos, moves, offset, NOISY, ~0L);
+    }
+
+    /**
+     * Writes the legal quiet moves, castling included, and returns the index
+     * after the last move. Together with {@link #generateLegalNoisy} this
+     * produces the same moves as {@link #generateLegal}.
+     */
+    public static int generateLegalQuiet(Position pos, int[] moves, int offset) {
+        return generateLegal(pos, moves, offset, QUIET, ~0L);
+    }
+
+    /**
+     * Returns true if an encoded move is legal in the position, e.g. a move
+     * taken from the transposition table or a killer slot. Only moves of the
+     * piece on the move's from-square are generated to check it.
+     */
+    public static boolean isLegal(Position pos, int move) {
+        if (move == Moves.NONE || pos.getPieceAt(Moves.from(move)) != Moves.piece(move))
+            return false;
+        int[] buffer = LEGALITY_BUFFER.get();
+        int kinds = Moves.isQuiet(move) ? QUIET : NOISY;
+        int end = generateLegal(pos, buffer, 0, kinds, 1L << Moves.from(move));
+        for (int i = 0; i < end; i++) {
+            if (buffer[i] == move)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Generates the legal moves of the requested kinds for the pieces on the
+     * from squares.
+     *
+     * Checkers and pinned pieces are computed once up front: in double check
+     * only the king may move, in single check other pieces must capture the
+     * checker or block, and pinned pieces may only move along their pin line.
+     */
+    private static int generateLegal(Position pos, int[] moves, int offset, int kinds, long fromMask) {
+        int us = pos.getSideToMove();
+        int them = us ^ 1;
+        long own = pos.getOccupancy(us);
+        long occupied = pos.getOccupied();
+        int king = pos.getKingSquare(us);
+        int kingPiece = Position.makePiece(us, Position.KING);
+        int n = offset;
+
+        // Squares each kind of move may land on
+        long kindMask = ((kinds & NOISY) != 0 ? pos.getOccupancy(them) : 0L)
+                | ((kinds & QUIET) != 0 ? ~occupied : 0L);
+
+        long checkers = pos.attackersTo(king, occupied) & pos.getOccupancy(them);
+
+        // King moves are tested with the king lifted off the board, so it cannot
+        // step back along the line of a slider that is checking it
+        if (((fromMask >>> king) & 1L) != 0) {
+            long kingTargets = Bitboards.kingAttacks(king) & ~own & kindMask;
+            long withoutKing = occupied ^ (1L << king);
+            while (kingTargets != 0) {
+                int to = Long.numberOfTrailingZeros(kingTargets);
+                kingTargets &= kingTargets - 1;
+                if (!pos.isSquareAttacked(to, them, withoutKing))
+                    moves[n++] = Moves.encode(king, to, kingPiece, pos.getPieceAt(to), NONE, 0);
+            }
+        }
+
+        if ((checkers & (checkers - 1)) != 0)
+            return n; // Double check: only the king can move
+
+        long checkMask = checkers == 0 ? ~0L
+                : checkers | Bitboards.BETWEEN[king][Long.numberOfTrailingZeros(checkers)];
+        long pinned = pinnedPieces(pos, us);
+        long targets = ~own & checkMask & kindMask;
+
+        n = generatePawnMoves(pos, us, checkMask, pinned, true, kinds, fromMask, moves, n);
+
+        // A pinned knight can never move
+        int piece = Position.makePiece(us, Position.KNIGHT);
+        long knights = pos.getPieces(piece) & ~pinned & fromMask;
+        while (knights != 0) {
+            int from = Long.numberOfTrailingZeros(knights);
+            knights &= knights - 1;
+            n = addMoves(pos, from, piece, Bitboards.knightAttacks(from) & targets, moves, n);
+        }
+
+        for (int type = Position.BISHOP; type <= Position.QUEEN; type++) {
+            piece = Position.makePiece(us, type);
+            long sliders = pos.getPieces(piece) & fromMask;
+            while (sliders != 0) {
+                int from = Long.numberOfTrailingZeros(sliders);
+                sliders &= sliders - 1;
+                long destinations = sliderAttacks(type, from, occupied) & targets;
+                if (((pinned >>> from) & 1L) != 0)
+                    destinations &= Bitboards.LINE[king][from];
+                n = addMoves(pos, from, piece, destinations, moves, n);
+            }
+        }
+
+        if (checkers == 0 && (kinds & QUIET) != 0 && ((fromMask >>> king) & 1L) != 0)
+            n = generateCastling(pos, us, true, moves, n);
+
+        return n;
+    }
+
+    /**
+     * Returns the pieces of the given colour that are pinned to their own king
+     * by an enemy slider.
+     */
+    public static long pinnedPieces(Position pos, int us) {
+        int them = us ^ 1;
+        int king = pos.getKingSquare(us);
+        long occupied = pos.getOccupied();
+        long queens = pos.getPieces(them, Position.QUEEN);
+        long snipers = (Bitboards.rookAttacks(king, 0L) & (pos.getPieces(them, Position.ROOK) | queens))
+                | (Bitboards.bishopAttacks(king, 0L) & (pos.getPieces(them, Position.BISHOP) | queens));
+
+        long pinned = 0L;
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long blockers = Bitboards.BETWEEN[king][sniper] & occupied;
+            if (blockers != 0 && (blockers & (blockers - 1)) == 0)
+                pinned |= blockers & pos.getOccupancy(us);
+        }
+        return pinned;
+    }
+
+    // ------------------ Game Rules ------------------
+
+    /**
+     * Returns the result and reason if the game has ended in the given
+     * position, e.g. "1-0 checkmate" or "1/2-1/2 repetition", or null if it
+     * goes on.
+     */
+    public static String outcome(Position pos) {
+        if (generateLegal(pos, new int[MAX_MOVES]) == 0) {
+            if (!pos.isInCheck())
+                return "1/2-1/2 stalemate";
+            return pos.isWhiteToMove() ? "0-1 checkmate" : "1-0 checkmate";
+        }
+        if (pos.getHalfMoveClock() >= 100)
+            return "1/2-1/2 fifty-move";
+
+        // Threefold: the position has occurred twice before since the last irreversible move
+        int repetitions = 0;
+        int limit = Math.min(pos.getHalfMoveClock(), pos.getHistorySize());
+        for (int i = 2; i <= limit; i += 2) {
+            if (pos.getHistoryKey(i) == pos.getKey() && ++repetitions == 2)
+                return "1/2-1/2 repetition";
+        }
+        return null;
+    }
+
+    // ------------------ Helpers ------------------
+
+    private static long sliderAttacks(int type, int from, long occupied) {
+        return switch (type) {
+            case Position.BISHOP -> Bitboards.bishopAttacks(from, occupied);
+            case Position.ROOK -> Bitboards.rookAttacks(from, occupied);
+            default -> Bitboards.queenAttacks(from, occupied);
+        };
+    }
+
+    /**
+     * Generates pawn pushes, captures, promotions and en passant. Each pawn is
+     * restricted to the check mask and, if pinned, its pin line; pass a full
+     * mask and no pinned pieces for pseudo-legal generation. Pushes to the
+     * last rank count as noisy moves, all other pushes as quiet.
+     */
+    private static int generatePawnMoves(Position pos, int us, long checkMask, long pinned, boolean legal,
+            int kinds, long fromMask, int[] moves, int n) {
+        int piece = Position.makePiece(us, Position.PAWN);
+        long pawns = pos.getPieces(piece) & fromMask;
+        boolean noisy = (kinds & NOISY) != 0;
+        boolean quiet = (kinds & QUIET) != 0;
+        long enemies = pos.getOccupancy(us ^ 1);
+        long occupied = pos.getOccupied();
+        long promotionRank = us == Position.WHITE ? Bitboards.RANK_8 : Bitboards.RANK_1;
+        long startRank = us == Position.WHITE ? Bitboards.RANK_2 : Bitboards.RANK_7;
+        int up = us == Position.WHITE ? 8 : -8;
+        int ep = pos.getEnPassantTargetSquare();
+        int king = pos.getKingSquare(us);
+
+        while (pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            long allowed = checkMask;
+            if (((pinned >>> from) & 1L) != 0)
+                allowed &= Bitboards.LINE[king][from];
+
+            // Pushes
+            int to = from + up;
+            if (((occupied >>> to) & 1L) == 0) {
+                if (((allowed >>> to) & 1L) != 0) {
+                    if (((promotionRank >>> to) & 1L) != 0) {
+                        if (noisy)
+                            n = addPromotions(from, to, us, NONE, moves, n);
+                    } else if (quiet) {
+                        moves[n++] = Moves.encode(from, to, piece, NONE, NONE, 0);
+                    }
+                }
+                int to2 = to + up;
+                if (quiet && ((startRank >>> from) & 1L) != 0 && ((occupied >>> to2) & 1L) == 0
+                        && ((allowed >>> to2) & 1L) != 0)
+                    moves[n++] = Moves.encode(from, to2, piece, NONE, NONE, Moves.DOUBLE_PUSH);
+            }
+
+            if (!noisy)
+                continue;
+
+            // Captures
+            long attacks = Bitboards.pawnAttacks(us, from);
+            long captures = attacks & enemies & allowed;
+            while (captures != 0) {
+                int target = Long.numberOfTrailingZeros(captures);
+                captures &= captures - 1;
+                if (((promotionRank >>> target) & 1L) != 0)
+                    n = addPromotions(from, target, us, pos.getPieceAt(target), moves, n);
+                else
+                    moves[n++] = Moves.encode(from, target, piece, pos.getPieceAt(target), NONE, 0);
+            }
+
+            if (ep != Position.NO_SQUARE && ((attacks >>> ep) & 1L) != 0
+                    && (!legal || isLegalEnPassant(pos, us, king, from, ep, ep - up)))
+                moves[n++] = Moves.encode(from, ep, piece, Position.makePiece(us ^ 1, Position.PAWN), NONE,
+                        Moves.EN_PASSANT);
+        }
+        return n;
+    }
+
+    /**
+     * En passant removes two pieces from one rank, which can expose the king
+     * to a slider in ways the pin mask does not catch, so it is verified by
+     * recomputing attacks on the king with the resulting occupancy.
+     */
+    private static boolean isLegalEnPassant(Position pos, int us, int king, int from, int to, int captured) {
+        long capturedBit = 1L << captured;
+        long occupied = (pos.getOccupied() ^ (1L << from) ^ capturedBit) | (1L << to);
+        long attackers = pos.attackersTo(king, occupied) & pos.getOccupancy(us ^ 1) & ~capturedBit;
+        return attackers == 0;
+    }
+
+    private static int addPromotions(int from, int to, int us, int captured, int[] moves, int n) {
+        int pawn = Position.makePiece(us, Position.PAWN);
+        // Queen first, since it is almost always the best choice
+        moves[n++] = Moves.encode(from, to, pawn, captured, Position.makePiece(us, Position.QUEEN), 0);
+        moves[n++] = Moves.encode(from, to, pawn, captured, Position.makePiece(us, Position.KNIGHT), 0);
+        moves[n++] = Moves.encode(from, to, pawn, captured, Position.makePiece(us, Position.ROOK), 0);
+        moves[n++] = Moves.encode(from, to, pawn, captured, Position.makePiece(us, Position.BISHOP), 0);
+        return n;
+    }
+
+    private static int addMoves(Position pos, int from, int piece, long destinations, int[] moves, int n) {
+        while (destinations != 0) {
+            int to = Long.numberOfTrailingZeros(destinations);
+            destinations &= destinations - 1;
+            moves[n++] = Moves.encode(from, to, piece, pos.getPieceAt(to), NONE, 0);
+        }
+        return n;
+    }
+
+    /**
+     * Castling requires the right to be held and the squares between king and
+     * rook to be empty. When generating legal moves the king must also not
+     * pass through or land on an attacked square; the caller has already
+     * established that it is not in check.
+     */
+    private static int generateCastling(Position pos, int us, boolean legal, int[] moves, int n) {
+        long occupied = pos.getOccupied();
+        int them = us ^ 1;
+        int king = Position.makePiece(us, Position.KING);
+        int base = us == Position.WHITE ? 0 : 56;
+        int kingside = us == Position.WHITE ? Position.WHITE_KINGSIDE : Position.BLACK_KINGSIDE;
+        int queenside = us == Position.WHITE ? Position.WHITE_QUEENSIDE : Position.BLACK_QUEENSIDE;
+
+        if (pos.canCastle(kingside) && (occupied & (0x60L << base)) == 0
+                && (!legal || (!pos.isSquareAttacked(base + 5, them) && !pos.isSquareAttacked(base + 6, them))))
+            moves[n++] = Moves.encode(base + 4, base + 6, king, NONE, NONE, Moves.CASTLING);
+        if (pos.canCastle(queenside) && (occupied & (0x0EL << base)) == 0
+                && (!legal || (!pos.isSquareAttacked(base + 3, them) && !pos.isSquareAttacked(base + 2, them))))
+            moves[n++] = Moves.encode(base + 4, base + 2, king, NONE, NONE, Moves.CASTLING);
+        return n;
+    }
+}
@@ -0,0 +1,86 @@
+import java.util.Arrays;
+
+/**
+ * MoveHistory collects the move ordering statistics a search learns as it
+ * goes: two killer moves per ply (quiet moves that caused a cutoff at the same
+ * ply elsewhere in the tree), a countermove for each previous move, and a
+ * history score per piece and destination square for quiet moves.
+ *
+ * Each search thread keeps its own MoveHistory.
+ */
+public class MoveHistory {
+    public static final int MAX_HISTORY = 16384; // History scores stay within +-MAX_HISTORY
+
+    private final int[][] killers = new int[Search.MAX_PLY][2];
+    private final int[][] counterMoves = new int[Position.NO_PIECE][64]; // [previous piece][previous to]
+    private final int[][] history = new int[Position.NO_PIECE][64]; // [piece][to]
+
+    /**
+     * Prepares for a new search: killers are forgotten and history scores
+     * are halved, so older results count for less.
+     */
+    public void newSearch() {
+        for (int[] slots : killers)
+            Arrays.fill(slots, Moves.NONE);
+        for (int[] scores : history) {
+            for (int i = 0; i < scores.length; i++)
+                scores[i] /= 2;
+        }
+    }
+
+    /**
+     * Empties all tables, e.g. between games.
+     */
+    public void clear() {
+        for (int[] slots : killers)
+            Arrays.fill(slots, Moves.NONE);
+        for (int[] moves : counterMoves)
+            Arrays.fill(moves, Moves.NONE);
+        for (int[] scores : history)
+            Arrays.fill(scores, 0);
+    }
+
+    public int getKiller(int ply, int slot) {
+        return killers[ply][slot];
+    }
+
+    /**
+     * Returns the move that last refuted the given previous move, or Moves.NONE.
+     */
+    public int getCounterMove(int previousMove) {
+        return previousMove == Moves.NONE ? Moves.NONE
+                : counterMoves[Moves.piece(previousMove)][Moves.to(previousMove)];
+    }
+
+    public int getHistory(int move) {
+        return history[Moves.piece(move)][Moves.to(move)];
+    }
+
+    /**
+     * Records a quiet move that caused a beta cutoff: it becomes a killer at
+     * this ply and the countermove to the previous move, its history score
+     * rises and the quiet moves searched before it without success fall.
+     */
+    public void update(int ply, int move, int previousMove, int depth, int[] triedQuiets, int triedCount) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        if (previousMove != Moves.NONE)
+            counterMoves[Moves.piece(previousMove)][Moves.to(previousMove)] = move;
+
+        int bonus = Math.min(depth * depth, 400);
+        addHistory(move, bonus);
+        for (int i = 0; i < triedCount; i++) {
+            if (triedQuiets[i] != move)
+                addHistory(triedQuiets[i], -bonus);
+        }
+    }
+
+    // Scores move towards +-MAX_HISTORY more slowly the closer they already are
+    private void addHistory(int move, int bonus) {
+        int[] scores = history[Moves.piece(move)];
+        int to = Moves.to(move);
+        scores[to] += bonus - scores[to] * Math.abs(bonus) / MAX_HISTORY;
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * MovePicker hands out the moves of one node in the order the search should
+ * try them, generating them in stages so that a cutoff early in the list
+ * saves the work of generating the rest:
+ *
+ * 1. the hash move, from the transposition table or the previous PV,
+ * 2. captures and promotions that do not lose material by static exchange
+ *    evaluation, most valuable victim / least valuable attacker first,
+ * 3. the two killer moves for this ply,
+ * 4. the countermove to the opponent's last move,
+ * 5. the remaining quiet moves, by history score,
+ * 6. the captures that lose material.
+ *
+ * In quiescence search only stage 2 is used, so losing captures are pruned.
+ * Moves from the hash table, killer and countermove slots are checked for
+ * legality before they are returned, and are not returned again by the
+ * later stages. Each ply of the search owns one picker, which is reused.
+ */
+public class MovePicker {
+    // Stages
+    private static final int HASH = 0;
+    private static final int GENERATE_NOISY = 1;
+    private static final int NOISY = 2;
+    private static final int KILLER_1 = 3;
+    private static final int KILLER_2 = 4;
+    private static final int COUNTER = 5;
+    private static final int GENERATE_QUIET = 6;
+    private static final int QUIET = 7;
+    private static final int BAD_NOISY = 8;
+    private static final int DONE = 9;
+
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private final int[] scores = new int[MoveGenerator.MAX_MOVES];
+    private int current; // Next unpicked index in moves
+    private int end; // Number of generated moves
+    private final int[] badNoisy = new int[MoveGenerator.MAX_MOVES]; // Losing captures, tried last
+    private int badCount;
+    private int badCurrent;
+
+    private Position pos;
+    private int stage;
+    private boolean noisyOnly; // Quiescence: stop after the noisy stage
+    private int hashMove;
+    private int killer1;
+    private int killer2;
+    private int counterMove;
+
+    /**
+     * Prepares to pick all moves at a main search node.
+     */
+    public void init(Position pos, int hashMove, MoveHistory history, int ply) {
+        this.pos = pos;
+        this.noisyOnly = false;
+        this.hashMove = hashMove;
+        this.killer1 = history.getKiller(ply, 0);
+        this.killer2 = history.getKiller(ply, 1);
+        this.counterMove = history.getCounterMove(pos.getLastMove());
+        this.stage = HASH;
+    }
+
+    /**
+     * Prepares to pick only captures and promotions, for quiescence search.
+     */
+    public void initNoisy(Position pos) {
+        this.pos = pos;
+        this.noisyOnly = true;
+        this.hashMove = Moves.NONE;
+        this.stage = GENERATE_NOISY;
+    }
+
+    /**
+     * Returns the next move to try, or Moves.NONE when there are none left.
+     */
+    public int next(MoveHistory history) {
+        while (true) {
+            switch (stage) {
+                case HASH -> {
+                    stage = GENERATE_NOISY;
+                    if (hashMove != Moves.NONE && MoveGenerator.isLegal(pos, hashMove))
+                        return hashMove;
+                    hashMove = Moves.NONE;
+                }
+                case GENERATE_NOISY -> {
+                    end = MoveGenerator.generateLegalNoisy(pos, moves, 0);
+                    current = 0;
+                    badCount = 0;
+                    badCurrent = 0;
+                    for (int i = 0; i < end; i++)
+                        scores[i] = noisyScore(moves[i]);
+                    stage = NOISY;
+                }
+                case NOISY -> {
+                    int move = pickBest();
+                    if (move != Moves.NONE) {
+                        if (move == hashMove)
+                            continue;
+                        if (StaticExchange.isAtLeast(pos, move, 0))
+                            return move;
+                        badNoisy[badCount++] = move; // Kept for the end, or dropped in quiescence
+                        continue;
+                    }
+                    stage = noisyOnly ? DONE : KILLER_1;
+                }
+                case KILLER_1 -> {
+                    stage = KILLER_2;
+                    if (isUsefulQuiet(killer1))
+                        return killer1;
+                    killer1 = Moves.NONE;
+                }
+                case KILLER_2 -> {
+                    stage = COUNTER;
+                    if (killer2 != killer1 && isUsefulQuiet(killer2))
+                        return killer2;
+                    killer2 = Moves.NONE;
+                }
+                case COUNTER -> {
+                    stage = GENERATE_QUIET;
+                    if (counterMove != killer1 && counterMove != killer2 && isUsefulQuiet(counterMove))
+                        return counterMove;
+                    counterMove = Moves.NONE;
+                }
+                case GENERATE_QUIET -> {
+                    end = MoveGenerator.generateLegalQuiet(pos, moves, 0);
+                    current = 0;
+                    for (int i = 0; i < end; i++)
+                        scores[i] = history.getHistory(moves[i]);
+                    stage = QUIET;
+                }
+                case QUIET -> {
+                    int move = pickBest();
+                    if (move == Moves.NONE) {
+                        stage = BAD_NOISY;
+                    } else if (move != hashMove && move != killer1 && move != killer2 && move != counterMove) {
+                        return move;
+                    }
+                }
+                case BAD_NOISY -> {
+                    if (badCurrent < badCount)
+                        return badNoisy[badCurrent++];
+                    stage = DONE;
+                }
+                default -> {
+                    return Moves.NONE;
+                }
+            }
+        }
+    }
+
+    // A killer or countermove is only tried if it is a legal quiet move here
+    private boolean isUsefulQuiet(int move) {
+        return move != Moves.NONE && move != hashMove && Moves.isQuiet(move) && MoveGenerator.isLegal(pos, move);
+    }
+
+    /**
+     * Selection sort step: moves the best scored remaining move to the front
+     * and returns it. Only the moves actually searched get sorted.
+     */
+    private int pickBest() {
+        if (current >= end)
+            return Moves.NONE;
+        int best = current;
+        for (int i = current + 1; i < end; i++) {
+            if (scores[i] > scores[best])
+                best = i;
+        }
+        int move = moves[best];
+        moves[best] = moves[current];
+        scores[best] = scores[current];
+        current++;
+        return move;
+    }
+
+    // Most valuable victim first, then least valuable attacker; promotions add the new piece
+    private static int noisyScore(int move) {
+        int score = 0;
+        if (Moves.isCapture(move))
+            score += Evaluation.PIECE_VALUES[Position.typeOf(Moves.captured(move))] * 8
+                    - Position.typeOf(Moves.piece(move));
+        if (Moves.isPromotion(move))
+            score += Evaluation.PIECE_VALUES[Position.typeOf(Moves.promotion(move))] - 300;
+        return score;
+    }
+}
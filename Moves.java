@@ -0,0 +1,141 @@
+/**
+ * Moves are passed around the engine as packed ints so that move lists,
+ * killer and history tables and transposition entries can store them as
+ * primitives. The static helpers here build and decode that encoding:
+ *
+ * <pre>
+ * bits  0-5   from square (A1 = 0 ... H8 = 63)
+ * bits  6-11  to square
+ * bits 12-15  moving piece (Position.WHITE_PAWN ... Position.BLACK_KING)
+ * bits 16-19  captured piece, Position.NO_PIECE if none
+ * bits 20-23  promotion piece, Position.NO_PIECE if none
+ * bits 24-26  flags: double pawn push, en passant, castling
+ * </pre>
+ *
+ * The JavaFX board wraps encoded moves in Move objects.
+ */
+public final class Moves {
+    public static final int NONE = 0; // Never a real move, since from == to
+
+    // Flags
+    public static final int DOUBLE_PUSH = 1;
+    public static final int EN_PASSANT = 2;
+    public static final int CASTLING = 4;
+
+    private Moves() {
+    }
+
+    public static int encode(int from, int to, int piece, int captured, int promotion, int flags) {
+        return from | (to << 6) | (piece << 12) | (captured << 16) | (promotion << 20) | (flags << 24);
+    }
+
+    public static int from(int move) {
+        return move & 0x3F;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    public static int piece(int move) {
+        return (move >>> 12) & 0xF;
+    }
+
+    public static int captured(int move) {
+        return (move >>> 16) & 0xF;
+    }
+
+    public static int promotion(int move) {
+        return (move >>> 20) & 0xF;
+    }
+
+    public static int flags(int move) {
+        return move >>> 24;
+    }
+
+    public static boolean isCapture(int move) {
+        return captured(move) != Position.NO_PIECE;
+    }
+
+    public static boolean isPromotion(int move) {
+        return promotion(move) != Position.NO_PIECE;
+    }
+
+    /**
+     * Quiet moves neither capture nor promote.
+     */
+    public static boolean isQuiet(int move) {
+        return (move & 0xFF0000) == ((Position.NO_PIECE << 16) | (Position.NO_PIECE << 20));
+    }
+
+    public static boolean isDoublePush(int move) {
+        return (flags(move) & DOUBLE_PUSH) != 0;
+    }
+
+    public static boolean isEnPassant(int move) {
+        return (flags(move) & EN_PASSANT) != 0;
+    }
+
+    public static boolean isCastling(int move) {
+        return (flags(move) & CASTLING) != 0;
+    }
+
+    /**
+     * Formats a move in UCI long algebraic notation, e.g. "e2e4" or "e7e8q".
+     */
+    public static String toUCI(int move) {
+        if (move == NONE)
+            return "0000";
+        String text = Position.squareName(from(move)) + Position.squareName(to(move));
+        if (isPromotion(move))
+            text += Character.toLowerCase(Position.pieceChar(promotion(move)));
+        return text;
+    }
+
+    /**
+     * Formats a legal move in standard algebraic notation (SAN), as used in
+     * PGN files, e.g. "Nbd7", "exd5", "e8=Q+" or "O-O#". The move must be
+     * about to be played in the given position, which is left unchanged.
+     */
+    public static String toSAN(Position pos, int move) {
+        int from = from(move), to = to(move);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        StringBuilder san = new StringBuilder();
+        if (isCastling(move)) {
+            san.append(Position.fileOf(to) == 6 ? "O-O" : "O-O-O");
+        } else if (Position.typeOf(piece(move)) == Position.PAWN) {
+            if (isCapture(move))
+                san.append((char) ('a' + Position.fileOf(from))).append('x');
+            san.append(Position.squareName(to));
+            if (isPromotion(move))
+                san.append('=').append(Character.toUpperCase(Position.pieceChar(promotion(move))));
+        } else {
+            san.append(Character.toUpperCase(Position.pieceChar(piece(move))));
+
+            // Name the file, else the rank, else both if another such piece can reach the square
+            boolean ambiguous = false, sameFile = false, sameRank = false;
+            int count = MoveGenerator.generateLegal(pos, moves);
+            for (int i = 0; i < count; i++) {
+                int other = from(moves[i]);
+                if (piece(moves[i]) == piece(move) && to(moves[i]) == to && other != from) {
+                    ambiguous = true;
+                    sameFile |= Position.fileOf(other) == Position.fileOf(from);
+                    sameRank |= Position.rankOf(other) == Position.rankOf(from);
+                }
+            }
+            if (ambiguous && (!sameFile || sameRank))
+                san.append((char) ('a' + Position.fileOf(from)));
+            if (ambiguous && sameFile)
+                san.append((char) ('1' + Position.rankOf(from)));
+            if (isCapture(move))
+                san.append('x');
+            san.append(Position.squareName(to));
+        }
+
+        pos.makeMove(move);
+        if (pos.isInCheck())
+            san.append(MoveGenerator.generateLegal(pos, moves) == 0 ? '#' : '+');
+        pos.unmakeMove();
+        return san.toString();
+    }
+}
@@ -0,0 +1,230 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * NnueEvaluator scores positions with an {@link NnueNetwork}. It keeps a
+ * stack of accumulators, one per ply: making a move copies the parent's
+ * accumulator and adds or subtracts the weight rows of the few features the
+ * move changes (two for a quiet move, three for a capture, four for castling),
+ * so a full refresh is only needed at the root.
+ *
+ * Each accumulator holds the White perspective followed by the Black one.
+ * Evaluators are per thread; the network itself is shared.
+ *
+ * Usage:
+ *   java [--add-modules jdk.incubator.vector] NnueEvaluator [lines] [hidden]
+ *       check the kernels and the incremental updates on a random network
+ */
+public class NnueEvaluator implements Evaluator {
+    private final NnueNetwork network;
+    private final NnueKernels kernels;
+    private final int hidden;
+    private final short[][] stack = new short[Search.MAX_PLY + 1][];
+    private int ply;
+
+    public NnueEvaluator(NnueNetwork network) {
+        this(network, NnueKernels.best());
+    }
+
+    public NnueEvaluator(NnueNetwork network, NnueKernels kernels) {
+        this.network = network;
+        this.kernels = kernels;
+        this.hidden = network.getHiddenSize();
+        for (int i = 0; i < stack.length; i++)
+            stack[i] = new short[2 * hidden];
+    }
+
+    public NnueNetwork getNetwork() {
+        return network;
+    }
+
+    public NnueKernels getKernels() {
+        return kernels;
+    }
+
+    // ------------------ Evaluator ------------------
+
+    @Override
+    public void reset(Position pos) {
+        ply = 0;
+        refresh(pos, stack[0]);
+    }
+
+    @Override
+    public void makeMove(int move) {
+        short[] acc = push();
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        int piece = Moves.piece(move);
+        int captured = Moves.captured(move);
+        int us = Position.colorOf(piece);
+
+        removeFeature(acc, piece, from);
+        addFeature(acc, Moves.isPromotion(move) ? Moves.promotion(move) : piece, to);
+        if (captured != Position.NO_PIECE)
+            removeFeature(acc, captured, Moves.isEnPassant(move) ? (us == Position.WHITE ? to - 8 : to + 8) : to);
+        if (Moves.isCastling(move)) {
+            int rook = Position.makePiece(us, Position.ROOK);
+            int rank = us == Position.WHITE ? 0 : 56;
+            if (to > from) {
+                removeFeature(acc, rook, rank + 7);
+                addFeature(acc, rook, rank + 5);
+            } else {
+                removeFeature(acc, rook, rank);
+                addFeature(acc, rook, rank + 3);
+            }
+        }
+    }
+
+    @Override
+    public void makeNullMove() {
+        push();
+    }
+
+    @Override
+    public void unmakeMove() {
+        ply--;
+    }
+
+    @Override
+    public int evaluate(Position pos) {
+        short[] acc = stack[ply];
+        short[] weights = network.getOutputWeights();
+        int us = pos.getSideToMove() == Position.WHITE ? 0 : hidden;
+        int them = hidden - us;
+        int sum = kernels.clippedDot(acc, us, weights, 0, hidden)
+                + kernels.clippedDot(acc, them, weights, hidden, hidden);
+        return (sum + network.getOutputBias()) / network.getOutputDivisor();
+    }
+
+    // ------------------ Accumulator ------------------
+
+    /**
+     * Computes the accumulator for a position from scratch.
+     */
+    public void refresh(Position pos, short[] acc) {
+        short[] biases = network.getFeatureBiases();
+        kernels.copy(biases, 0, acc, 0, hidden);
+        kernels.copy(biases, 0, acc, hidden, hidden);
+        long occupied = pos.getOccupied();
+        while (occupied != 0) {
+            int square = Long.numberOfTrailingZeros(occupied);
+            occupied &= occupied - 1;
+            addFeature(acc, pos.getPieceAt(square), square);
+        }
+    }
+
+    /**
+     * Returns the current accumulator; callers must not modify it.
+     */
+    public short[] getAccumulator() {
+        return stack[ply];
+    }
+
+    private short[] push() {
+        short[] acc = stack[ply + 1];
+        kernels.copy(stack[ply], 0, acc, 0, 2 * hidden);
+        ply++;
+        return acc;
+    }
+
+    private void addFeature(short[] acc, int piece, int square) {
+        short[] weights = network.getFeatureWeights();
+        kernels.add(acc, 0, weights, NnueNetwork.featureIndex(Position.WHITE, piece, square) * hidden, hidden);
+        kernels.add(acc, hidden, weights, NnueNetwork.featureIndex(Position.BLACK, piece, square) * hidden, hidden);
+    }
+
+    private void removeFeature(short[] acc, int piece, int square) {
+        short[] weights = network.getFeatureWeights();
+        kernels.subtract(acc, 0, weights, NnueNetwork.featureIndex(Position.WHITE, piece, square) * hidden, hidden);
+        kernels.subtract(acc, hidden, weights, NnueNetwork.featureIndex(Position.BLACK, piece, square) * hidden,
+                hidden);
+    }
+
+    // ------------------ Self-check ------------------
+
+    /**
+     * Builds random networks, one of the given hidden size (default 256) and
+     * one a few neurons wider so the vector kernels' scalar tails run too,
+     * and plays random lines (first argument, default 200) from the search
+     * benchmark positions, with some moves taken back and some null moves.
+     * After every step the best available kernels must match
+     * {@link NnueScalar} in both accumulator and score, and the incrementally
+     * updated accumulator must match a full refresh. Prints the mismatch
+     * counts and exits with status 1 if there are any.
+     */
+    public static void main(String[] args) {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int hiddenSize = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        Bitboards.init();
+
+        Random random = new Random(1); // Fixed so a failure can be reproduced
+        NnueKernels best = NnueKernels.best();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        long steps = 0, kernelMismatches = 0, refreshMismatches = 0;
+        for (int hidden : new int[] { hiddenSize, hiddenSize + 7 }) {
+            NnueNetwork network = randomNetwork(hidden, random);
+            NnueEvaluator tested = new NnueEvaluator(network, best);
+            NnueEvaluator scalar = new NnueEvaluator(network, new NnueScalar());
+            short[] fresh = new short[2 * hidden];
+            boolean[] nullMoves = new boolean[Search.MAX_PLY]; // Per depth, how the line got there
+            for (int line = 0; line < lines; line++) {
+                Position pos = Position.fromFEN(Search.BENCH_POSITIONS[line % Search.BENCH_POSITIONS.length]);
+                tested.reset(pos);
+                scalar.reset(pos);
+                int depth = 0;
+                for (int step = 0; step < 2 * Search.MAX_PLY; step++) {
+                    int count = MoveGenerator.generateLegal(pos, moves);
+                    int choice = random.nextInt(10);
+                    if (depth > 0 && (count == 0 || choice == 0)) {
+                        depth--;
+                        if (nullMoves[depth])
+                            pos.unmakeNullMove();
+                        else
+                            pos.unmakeMove();
+                        tested.unmakeMove();
+                        scalar.unmakeMove();
+                    } else if (count == 0 || depth == Search.MAX_PLY - 1) {
+                        break;
+                    } else if (choice == 1 && !pos.isInCheck()) {
+                        pos.makeNullMove();
+                        tested.makeNullMove();
+                        scalar.makeNullMove();
+                        nullMoves[depth++] = true;
+                    } else {
+                        int move = moves[random.nextInt(count)];
+                        tested.makeMove(move);
+                        scalar.makeMove(move);
+                        pos.makeMove(move);
+                        nullMoves[depth++] = false;
+                    }
+
+                    steps++;
+                    if (tested.evaluate(pos) != scalar.evaluate(pos)
+                            || !Arrays.equals(tested.getAccumulator(), scalar.getAccumulator()))
+                        kernelMismatches++;
+                    scalar.refresh(pos, fresh);
+                    if (!Arrays.equals(fresh, scalar.getAccumulator()))
+                        refreshMismatches++;
+                }
+            }
+        }
+
+        System.out.printf("%d steps with %s: %d kernel mismatches, %d incremental mismatches%n", steps,
+                best.getClass().getName(), kernelMismatches, refreshMismatches);
+        System.exit(kernelMismatches == 0 && refreshMismatches == 0 ? 0 : 1);
+    }
+
+    // Weights small enough that a full board cannot overflow the int16 accumulator
+    private static NnueNetwork randomNetwork(int hidden, Random random) {
+        short[] biases = new short[hidden];
+        for (int i = 0; i < biases.length; i++)
+            biases[i] = (short) (random.nextInt(129) - 64);
+        short[] weights = new short[NnueNetwork.FEATURES * hidden];
+        for (int i = 0; i < weights.length; i++)
+            weights[i] = (short) (random.nextInt(65) - 32);
+        byte[] output = new byte[2 * hidden];
+        random.nextBytes(output);
+        return new NnueNetwork(hidden, 64, biases, weights, output, random.nextInt(2001) - 1000);
+    }
+}
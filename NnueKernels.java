@@ -0,0 +1,45 @@
+/**
+ * NnueKernels are the inner loops of the neural network evaluator: adding
+ * and subtracting feature weight rows to the accumulator, and the output
+ * layer's clipped dot product. {@link NnueScalar} implements them with plain
+ * loops; NnueSimd uses the jdk.incubator.vector API, which needs
+ * "--add-modules jdk.incubator.vector" to compile and run.
+ */
+public interface NnueKernels {
+    /**
+     * dst[dstOffset + i] = src[srcOffset + i] for i in [0, n).
+     */
+    void copy(short[] src, int srcOffset, short[] dst, int dstOffset, int n);
+
+    /**
+     * acc[accOffset + i] += weights[weightOffset + i] for i in [0, n).
+     */
+    void add(short[] acc, int accOffset, short[] weights, int weightOffset, int n);
+
+    /**
+     * acc[accOffset + i] -= weights[weightOffset + i] for i in [0, n).
+     */
+    void subtract(short[] acc, int accOffset, short[] weights, int weightOffset, int n);
+
+    /**
+     * Returns the sum of clamp(acc[accOffset + i], 0, 127) * weights[weightOffset + i]
+     * for i in [0, n).
+     */
+    int clippedDot(short[] acc, int accOffset, short[] weights, int weightOffset, int n);
+
+    /**
+     * Returns the vectorized kernels if the vector module is available, and
+     * the scalar ones otherwise.
+     */
+    static NnueKernels best() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                // Loaded by name so the rest of the engine compiles without the module
+                return (NnueKernels) Class.forName("NnueSimd").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Fall back to the scalar kernels
+            }
+        }
+        return new NnueScalar();
+    }
+}
@@ -0,0 +1,143 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * NnueNetwork holds the quantized weights of an efficiently updatable neural
+ * network evaluator. The network has three layers:
+ *
+ * - 768 inputs, one per piece (own or enemy, six types) on each square, seen
+ *   from one side's perspective; from Black's perspective the board is
+ *   flipped vertically so both sides see themselves moving up,
+ * - a hidden layer of N int16 neurons per perspective (the accumulator),
+ *   which {@link NnueEvaluator} updates incrementally as pieces move,
+ * - one output: the clipped (0-127) hidden neurons of the side to move and
+ *   then of the other side, times int8 weights, plus a bias, divided by a
+ *   scale to give centipawns.
+ *
+ * Networks are read from a little-endian binary file:
+ *
+ *   int32  magic 0x4E4E5545 ("NNUE"), int32 version 1
+ *   int32  hidden size N, int32 output divisor
+ *   int16  feature biases [N]
+ *   int16  feature weights [768][N]
+ *   int8   output weights [2N]
+ *   int32  output bias
+ *
+ * A network is immutable once loaded and shared by all search threads.
+ */
+public class NnueNetwork {
+    public static final int FEATURES = 768;
+    public static final int MAGIC = 0x4E4E5545;
+    public static final int VERSION = 1;
+
+    private final int hiddenSize;
+    private final int outputDivisor;
+    private final short[] featureBiases;
+    private final short[] featureWeights; // Feature f's weights start at f * hiddenSize
+    private final short[] outputWeights; // int8 values, widened for the kernels
+    private final int outputBias;
+
+    public NnueNetwork(int hiddenSize, int outputDivisor, short[] featureBiases, short[] featureWeights,
+            byte[] outputWeights, int outputBias) {
+        if (hiddenSize < 1 || featureBiases.length != hiddenSize || featureWeights.length != FEATURES * hiddenSize
+                || outputWeights.length != 2 * hiddenSize || outputDivisor < 1)
+            throw new IllegalArgumentException("Inconsistent network dimensions");
+        this.hiddenSize = hiddenSize;
+        this.outputDivisor = outputDivisor;
+        this.featureBiases = featureBiases.clone();
+        this.featureWeights = featureWeights.clone();
+        this.outputWeights = new short[outputWeights.length];
+        for (int i = 0; i < outputWeights.length; i++)
+            this.outputWeights[i] = outputWeights[i];
+        this.outputBias = outputBias;
+    }
+
+    /**
+     * Reads a network file.
+     *
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if it is not a valid network file
+     */
+    public static NnueNetwork load(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < 16 || buffer.getInt() != MAGIC)
+            throw new IllegalArgumentException("Not a network file: " + path);
+        int version = buffer.getInt();
+        if (version != VERSION)
+            throw new IllegalArgumentException("Unsupported network version " + version + ": " + path);
+        int hidden = buffer.getInt();
+        int divisor = buffer.getInt();
+        long expected = 2L * hidden + 2L * FEATURES * hidden + 2L * hidden + 4;
+        if (hidden < 1 || buffer.remaining() != expected)
+            throw new IllegalArgumentException("Network file has the wrong size: " + path);
+
+        short[] biases = new short[hidden];
+        short[] weights = new short[FEATURES * hidden];
+        byte[] output = new byte[2 * hidden];
+        buffer.asShortBuffer().get(biases);
+        buffer.position(buffer.position() + 2 * hidden);
+        buffer.asShortBuffer().get(weights);
+        buffer.position(buffer.position() + 2 * weights.length);
+        buffer.get(output);
+        int bias = buffer.getInt();
+        return new NnueNetwork(hidden, divisor, biases, weights, output, bias);
+    }
+
+    /**
+     * Writes the network in the format read by {@link #load}, e.g. from a
+     * training tool.
+     */
+    public void write(OutputStream out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(20 + 2 * featureBiases.length + 2 * featureWeights.length
+                + outputWeights.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(hiddenSize).putInt(outputDivisor);
+        for (short bias : featureBiases)
+            buffer.putShort(bias);
+        for (short weight : featureWeights)
+            buffer.putShort(weight);
+        for (short weight : outputWeights)
+            buffer.put((byte) weight);
+        buffer.putInt(outputBias);
+        out.write(buffer.array());
+    }
+
+    /**
+     * Returns the input feature for a piece on a square, seen from the given
+     * side.
+     */
+    public static int featureIndex(int perspective, int piece, int square) {
+        int relative = Position.colorOf(piece) == perspective ? Position.typeOf(piece) : Position.typeOf(piece) + 6;
+        int relativeSquare = perspective == Position.WHITE ? square : square ^ 56;
+        return relative * 64 + relativeSquare;
+    }
+
+    public int getHiddenSize() {
+        return hiddenSize;
+    }
+
+    public int getOutputDivisor() {
+        return outputDivisor;
+    }
+
+    public int getOutputBias() {
+        return outputBias;
+    }
+
+    // The arrays are shared with the evaluators, which only read them
+
+    short[] getFeatureBiases() {
+        return featureBiases;
+    }
+
+    short[] getFeatureWeights() {
+        return featureWeights;
+    }
+
+    short[] getOutputWeights() {
+        return outputWeights;
+    }
+}
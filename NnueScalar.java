@@ -0,0 +1,31 @@
+/**
+ * Plain-loop {@link NnueKernels}, used when the vector API is unavailable.
+ */
+public class NnueScalar implements NnueKernels {
+    @Override
+    public void copy(short[] src, int srcOffset, short[] dst, int dstOffset, int n) {
+        System.arraycopy(src, srcOffset, dst, dstOffset, n);
+    }
+
+    @Override
+    public void add(short[] acc, int accOffset, short[] weights, int weightOffset, int n) {
+        for (int i = 0; i < n; i++)
+            acc[accOffset + i] += weights[weightOffset + i];
+    }
+
+    @Override
+    public void subtract(short[] acc, int accOffset, short[] weights, int weightOffset, int n) {
+        for (int i = 0; i < n; i++)
+            acc[accOffset + i] -= weights[weightOffset + i];
+    }
+
+    @Override
+    public int clippedDot(short[] acc, int accOffset, short[] weights, int weightOffset, int n) {
+        int sum = 0;
+        for (int i = 0; i < n; i++) {
+            int value = Math.min(Math.max(acc[accOffset + i], 0), 127);
+            sum += value * weights[weightOffset + i];
+        }
+        return sum;
+    }
+}
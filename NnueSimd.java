@@ -0,0 +1,65 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link NnueKernels} vectorized with the jdk.incubator.vector API, using the
+ * widest vectors the CPU supports (SSE, AVX2, AVX-512 or NEON). Tails shorter
+ * than a vector are handled with scalar loops. Needs
+ * "--add-modules jdk.incubator.vector" to compile and run; without it
+ * {@link NnueKernels#best()} falls back to {@link NnueScalar}.
+ */
+public class NnueSimd implements NnueKernels {
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public void copy(short[] src, int srcOffset, short[] dst, int dstOffset, int n) {
+        System.arraycopy(src, srcOffset, dst, dstOffset, n);
+    }
+
+    @Override
+    public void add(short[] acc, int accOffset, short[] weights, int weightOffset, int n) {
+        int i = 0;
+        for (int bound = SHORTS.loopBound(n); i < bound; i += SHORTS.length()) {
+            ShortVector a = ShortVector.fromArray(SHORTS, acc, accOffset + i);
+            ShortVector w = ShortVector.fromArray(SHORTS, weights, weightOffset + i);
+            a.add(w).intoArray(acc, accOffset + i);
+        }
+        for (; i < n; i++)
+            acc[accOffset + i] += weights[weightOffset + i];
+    }
+
+    @Override
+    public void subtract(short[] acc, int accOffset, short[] weights, int weightOffset, int n) {
+        int i = 0;
+        for (int bound = SHORTS.loopBound(n); i < bound; i += SHORTS.length()) {
+            ShortVector a = ShortVector.fromArray(SHORTS, acc, accOffset + i);
+            ShortVector w = ShortVector.fromArray(SHORTS, weights, weightOffset + i);
+            a.sub(w).intoArray(acc, accOffset + i);
+        }
+        for (; i < n; i++)
+            acc[accOffset + i] -= weights[weightOffset + i];
+    }
+
+    @Override
+    public int clippedDot(short[] acc, int accOffset, short[] weights, int weightOffset, int n) {
+        // Clipped values times int8 weights fit in a short; the sums are widened to ints
+        IntVector sum = IntVector.zero(INTS);
+        int i = 0;
+        for (int bound = SHORTS.loopBound(n); i < bound; i += SHORTS.length()) {
+            ShortVector a = ShortVector.fromArray(SHORTS, acc, accOffset + i)
+                    .max((short) 0).min((short) 127);
+            ShortVector product = a.mul(ShortVector.fromArray(SHORTS, weights, weightOffset + i));
+            sum = sum.add(product.convertShape(VectorOperators.S2I, INTS, 0))
+                    .add(product.convertShape(VectorOperators.S2I, INTS, 1));
+        }
+        int total = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < n; i++) {
+            int value = Math.min(Math.max(acc[accOffset + i], 0), 127);
+            total += value * weights[weightOffset + i];
+        }
+        return total;
+    }
+}
@@ -0,0 +1,108 @@
+import java.io.PrintStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * ParallelPerft counts perft nodes across several cores. The tree is split at
+ * the root and, for deep counts, at the next ply as well; each subtree becomes
+ * a fork/join task with its own copy of the position, and the lower plies are
+ * counted sequentially by a {@link Perft} (which bulk-counts at depth 1).
+ * Workers may share one lock-free {@link PerftHashTable}.
+ */
+public class ParallelPerft {
+    private static final int SPLIT_PLIES = 2; // Plies below the root that are split into tasks
+    private static final int MIN_TASK_DEPTH = 3; // Subtrees shallower than this are not worth forking
+
+    private final ForkJoinPool pool;
+    private final PerftHashTable hashTable; // Shared by all workers, null if counts are not cached
+
+    public ParallelPerft(int threads) {
+        this(threads, null);
+    }
+
+    public ParallelPerft(int threads, PerftHashTable hashTable) {
+        this.pool = new ForkJoinPool(threads);
+        this.hashTable = hashTable;
+    }
+
+    /**
+     * Counts the leaf nodes below a position. The position is not modified.
+     */
+    public long count(Position position, int depth) {
+        return pool.invoke(new PerftTask(new Position(position), depth, SPLIT_PLIES));
+    }
+
+    /**
+     * Counts leaf nodes like {@link #count(Position, int)}, printing the count
+     * below each root move once all of them are done.
+     */
+    public long divide(Position position, int depth, PrintStream out) {
+        if (depth < 1)
+            return count(position, depth);
+
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegal(position, moves);
+        PerftTask[] tasks = new PerftTask[count];
+        for (int i = 0; i < count; i++) {
+            Position child = new Position(position);
+            child.makeMove(moves[i]);
+            tasks[i] = new PerftTask(child, depth - 1, SPLIT_PLIES - 1);
+            pool.execute(tasks[i]);
+        }
+
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            long nodes = tasks[i].join();
+            out.println(Moves.toUCI(moves[i]) + ": " + nodes);
+            total += nodes;
+        }
+        out.println();
+        out.println("Moves: " + count);
+        return total;
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Counts one subtree, forking a child task per move while there are split
+     * plies left and the subtree is deep enough.
+     */
+    @SuppressWarnings("serial") // Tasks are never serialized
+    private final class PerftTask extends RecursiveTask<Long> {
+        private final Position position; // Owned by this task
+        private final int depth;
+        private final int splitPlies;
+
+        PerftTask(Position position, int depth, int splitPlies) {
+            this.position = position;
+            this.depth = depth;
+            this.splitPlies = splitPlies;
+        }
+
+        @Override
+        protected Long compute() {
+            if (splitPlies <= 0 || depth < MIN_TASK_DEPTH)
+                return new Perft(position, hashTable).count(depth);
+
+            int[] moves = new int[MoveGenerator.MAX_MOVES];
+            int count = MoveGenerator.generateLegal(position, moves);
+            PerftTask[] children = new PerftTask[count];
+            for (int i = 0; i < count; i++) {
+                Position child = new Position(position);
+                child.makeMove(moves[i]);
+                children[i] = new PerftTask(child, depth - 1, splitPlies - 1);
+            }
+            invokeAll(children);
+
+            long nodes = 0;
+            for (PerftTask child : children)
+                nodes += child.join();
+            return nodes;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * ParallelSearch runs a {@link Search} on several cores using Lazy SMP: every
+ * thread searches the same root position with its own copy of the board, and
+ * the threads only share the {@link TranspositionTable}. Helper threads start
+ * one ply deeper on alternate threads so they spread out over different depths
+ * and fill the table ahead of the main thread.
+ *
+ * The main search runs on the calling thread and alone decides the move; when
+ * it finishes the helpers are stopped. With one thread this is a plain Search.
+ */
+public class ParallelSearch {
+    // Helpers run until the main thread stops them
+    private static final SearchLimits HELPER_LIMITS = new SearchLimits(0, 0, 0);
+
+    private final TranspositionTable tt;
+    private final Search[] searches; // [0] is the main search
+    private final ExecutorService helpers; // Null with one thread
+    private SearchListener listener;
+
+    public ParallelSearch(int threads) {
+        this(threads, new TranspositionTable(Search.DEFAULT_HASH_MB));
+    }
+
+    public ParallelSearch(int threads, TranspositionTable tt) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Thread count must be at least 1");
+        this.tt = tt;
+        this.searches = new Search[threads];
+        for (int i = 0; i < threads; i++)
+            searches[i] = new Search(tt);
+        searches[0].setListener(this::forwardIteration);
+
+        this.helpers = threads > 1 ? Executors.newFixedThreadPool(threads - 1, task -> {
+            Thread thread = new Thread(task, "search-helper");
+            thread.setDaemon(true); // Do not keep the JVM alive
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Sets the listener that receives the main thread's iteration reports,
+     * with node counts totalled over all threads.
+     */
+    public void setListener(SearchListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Sets the endgame tables probed by every thread, or null for none.
+     */
+    public void setTablebase(Tablebase tablebase) {
+        for (Search search : searches)
+            search.setTablebase(tablebase);
+    }
+
+    /**
+     * Selects the pruning and reduction features on every thread. Must not be
+     * called during a search.
+     */
+    public void setOptions(SearchOptions options) {
+        for (Search search : searches)
+            search.setOptions(options);
+    }
+
+    /**
+     * Switches every thread to an {@link NnueEvaluator} for the given network,
+     * or back to the {@link ClassicEvaluator} if it is null. Must not be
+     * called during a search.
+     */
+    public void setNetwork(NnueNetwork network) {
+        for (Search search : searches)
+            search.setEvaluator(network != null ? new NnueEvaluator(network) : new ClassicEvaluator());
+    }
+
+    /**
+     * Searches a position on all threads and returns the main thread's best
+     * move, or Moves.NONE if there is no legal move. The position is not
+     * modified.
+     */
+    public int search(Position root, SearchLimits limits) {
+        tt.newSearch();
+        for (Search search : searches)
+            search.reset();
+
+        Future<?>[] futures = new Future<?>[searches.length];
+        for (int i = 1; i < searches.length; i++) {
+            Search helper = searches[i];
+            int startDepth = 1 + (i & 1);
+            futures[i] = helpers.submit(() -> helper.iterate(root, HELPER_LIMITS, startDepth));
+        }
+
+        int bestMove = searches[0].iterate(root, limits, 1);
+
+        for (int i = 1; i < searches.length; i++)
+            searches[i].stop();
+        for (int i = 1; i < searches.length; i++) {
+            try {
+                futures[i].get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Search helper failed", e.getCause());
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     * Stops a search in progress on every thread.
+     */
+    public void stop() {
+        for (Search search : searches)
+            search.stop();
+    }
+
+    public int getThreads() {
+        return searches.length;
+    }
+
+    /**
+     * Returns the nodes searched by one thread in the current or last search.
+     */
+    public long getNodes(int thread) {
+        return searches[thread].getNodes();
+    }
+
+    /**
+     * Returns the nodes searched by all threads together.
+     */
+    public long getNodes() {
+        long total = 0;
+        for (Search search : searches)
+            total += search.getNodes();
+        return total;
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return tt;
+    }
+
+    /**
+     * Stops the helper threads.
+     */
+    public void shutdown() {
+        if (helpers != null)
+            helpers.shutdownNow();
+    }
+
+    private void forwardIteration(int depth, int score, long nodes, long millis, int[] pv, int pvLength) {
+        if (listener != null)
+            listener.iterationComplete(depth, score, getNodes(), millis, pv, pvLength);
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * PawnHashTable caches the pawn structure part of the evaluation by pawn key
+ * (see {@link Position#getPawnKey()}). Pawns move rarely compared with the
+ * other pieces, so most positions in a search share their pawn structure with
+ * one evaluated shortly before.
+ *
+ * Each entry holds the pawn structure score, the passed pawns of both sides,
+ * and the king shelter score for the king squares it was last computed for;
+ * the shelter is recomputed when the kings have moved.
+ *
+ * Unlike the {@link TranspositionTable} this table is not shared: every
+ * search thread has its own, and a probe selects the entry that the getters
+ * and stores then refer to.
+ */
+public class PawnHashTable {
+    public static final int DEFAULT_MB = 2;
+
+    private static final int ENTRY_BYTES = 28;
+    private static final int NO_KINGS = -1;
+
+    private final long[] keys;
+    private final int[] scores; // Packed pawn structure score for White
+    private final long[] passed; // Passed pawns of both colours
+    private final int[] kingSquares; // White king + black king * 64 the shelter was computed for
+    private final int[] shelters; // Packed king shelter score for White
+    private final int mask;
+
+    private int index; // Entry selected by the last probe
+    private long probes;
+    private long hits;
+
+    /**
+     * Creates a table using at most the given number of megabytes, rounded
+     * down to a power-of-two entry count.
+     */
+    public PawnHashTable(int megabytes) {
+        if (megabytes < 1)
+            throw new IllegalArgumentException("Pawn hash size must be at least 1 MB");
+        int entries = Integer.highestOneBit((int) Math.min((long) megabytes * 1024 * 1024 / ENTRY_BYTES, 1 << 26));
+        keys = new long[entries];
+        scores = new int[entries];
+        passed = new long[entries];
+        kingSquares = new int[entries];
+        shelters = new int[entries];
+        mask = entries - 1;
+        clear();
+    }
+
+    /**
+     * Empties the table and its statistics.
+     */
+    public void clear() {
+        for (int i = 0; i <= mask; i++) {
+            keys[i] = 0L;
+            scores[i] = 0;
+            passed[i] = 0L;
+            kingSquares[i] = NO_KINGS;
+        }
+        probes = 0;
+        hits = 0;
+    }
+
+    /**
+     * Selects the entry for a pawn key and returns true if it holds that
+     * pawn structure. Entries start out holding the empty structure (key 0),
+     * which is correct for positions without pawns.
+     */
+    public boolean probe(long pawnKey) {
+        probes++;
+        index = (int) pawnKey & mask;
+        if (keys[index] != pawnKey)
+            return false;
+        hits++;
+        return true;
+    }
+
+    /**
+     * Overwrites the selected entry with a new pawn structure.
+     */
+    public void store(long pawnKey, int score, long passedPawns) {
+        keys[index] = pawnKey;
+        scores[index] = score;
+        passed[index] = passedPawns;
+        kingSquares[index] = NO_KINGS;
+    }
+
+    public int getScore() {
+        return scores[index];
+    }
+
+    public long getPassed() {
+        return passed[index];
+    }
+
+    /**
+     * Returns true if the selected entry has a shelter score for these king
+     * squares.
+     */
+    public boolean hasShelter(int whiteKing, int blackKing) {
+        return kingSquares[index] == whiteKing + blackKing * 64;
+    }
+
+    public int getShelter() {
+        return shelters[index];
+    }
+
+    public void storeShelter(int whiteKing, int blackKing, int shelter) {
+        kingSquares[index] = whiteKing + blackKing * 64;
+        shelters[index] = shelter;
+    }
+
+    public long getProbes() {
+        return probes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the fraction of probes that found their entry.
+     */
+    public double getHitRate() {
+        return probes > 0 ? (double) hits / probes : 0.0;
+    }
+
+    // ------------------ Benchmark ------------------
+
+    /**
+     * Evaluates every leaf of the full-width tree below the search benchmark
+     * positions (first argument the depth, default 4), walked depth first as
+     * a search would, and prints the hit rate and the time per evaluation
+     * with the table and without. The time of the walk alone is measured
+     * separately and subtracted. The second argument is the number of timed
+     * rounds, default 5; the best round counts.
+     */
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        Bitboards.init();
+
+        PawnHashTable table = new PawnHashTable(DEFAULT_MB);
+        int[][] moves = new int[depth][MoveGenerator.MAX_MOVES];
+        long[] walk = new long[3]; // Best round: tree only, without the table, with it
+        long leaves = 0, probes = 0, hits = 0;
+        long sink = 0;
+        for (int round = 0; round < rounds; round++) {
+            long[] time = new long[3];
+            for (String fen : Search.BENCH_POSITIONS) {
+                Position pos = Position.fromFEN(fen);
+                for (int mode = 0; mode < 3; mode++) {
+                    table.clear();
+                    long start = System.nanoTime();
+                    sink += walk(pos, depth, moves, mode, table);
+                    time[mode] += System.nanoTime() - start;
+                    if (mode == 2 && round == 0) {
+                        probes += table.getProbes();
+                        hits += table.getHits();
+                    }
+                }
+                if (round == 0)
+                    leaves += walk(pos, depth, moves, 0, null);
+            }
+            for (int mode = 0; mode < 3; mode++)
+                walk[mode] = round == 0 ? time[mode] : Math.min(walk[mode], time[mode]);
+        }
+
+        System.out.printf("%d leaves, pawn hash hit rate %.1f%%%n", leaves, 100.0 * hits / Math.max(probes, 1));
+        System.out.printf("evaluate without table %.1f ns, with table %.1f ns%n",
+                (double) (walk[1] - walk[0]) / leaves, (double) (walk[2] - walk[0]) / leaves);
+        if (sink == 42)
+            System.out.println(); // Keeps the evaluations from being optimized away
+    }
+
+    // Mode 0 counts the leaves, 1 sums their evaluations without a table, 2 with one
+    private static long walk(Position pos, int depth, int[][] moves, int mode, PawnHashTable table) {
+        if (depth == 0)
+            return mode == 0 ? 1 : Evaluation.evaluate(pos, mode == 2 ? table : null);
+        long sum = 0;
+        int[] list = moves[depth - 1];
+        int count = MoveGenerator.generateLegal(pos, list);
+        for (int i = 0; i < count; i++) {
+            pos.makeMove(list[i]);
+            sum += walk(pos, depth - 1, moves, mode, table);
+            pos.unmakeMove();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,213 @@
+import java.io.PrintStream;
+
+/**
+ * Perft walks the legal move tree of a position to a fixed depth and counts
+ * the leaf nodes. Comparing the counts with published reference values is the
+ * standard way to validate a move generator, and the nodes per second show
+ * its throughput. Runs headless, without the JavaFX board.
+ *
+ * At depth 1 the legal moves are counted rather than played (bulk counting),
+ * since each of them is known to lead to exactly one leaf. An optional
+ * {@link PerftHashTable} caches subtree counts so transpositions are only
+ * counted once.
+ *
+ * Usage:
+ *   java Perft <depth> [FEN]          count nodes (start position by default)
+ *   java Perft <depth> [FEN] --divide also print the count below each root move
+ *   java Perft <depth> [FEN] --threads N
+ *                                     split the tree across N worker threads
+ *   java Perft <depth> [FEN] --hash MB
+ *                                     cache subtree counts in a table of MB megabytes
+ *   java Perft --suite [--threads N] [--hash MB]
+ *                                     check the reference positions
+ */
+public class Perft {
+    private static final int MAX_DEPTH = 64;
+
+    // Reference positions: FEN, depth, expected node count
+    private static final Object[][] SUITE = {
+            { "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", 5, 4865609L },
+            { "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", 4, 4085603L }, // Kiwipete
+            { "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", 6, 11030083L },
+            { "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", 4, 422333L },
+            { "r2q1rk1/pP1p2pp/Q4n2/bbp1p3/Np6/1B3NBn/pPPP1PPP/R3K2R b KQ - 0 1", 4, 422333L },
+            { "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", 4, 2103487L },
+            { "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10", 4, 3894594L },
+    };
+
+    private final Position position;
+    private final PerftHashTable hashTable; // null if counts are not cached
+    private int[] moves = new int[0]; // One move list per ply, sized on first use
+
+    public Perft(Position position) {
+        this(position, null);
+    }
+
+    public Perft(Position position, PerftHashTable hashTable) {
+        this.position = position;
+        this.hashTable = hashTable;
+    }
+
+    /**
+     * Counts the leaf nodes of the legal move tree to the given depth.
+     */
+    public long count(int depth) {
+        if (depth > MAX_DEPTH)
+            throw new IllegalArgumentException("Depth must be at most " + MAX_DEPTH);
+        if (moves.length < depth * MoveGenerator.MAX_MOVES)
+            moves = new int[depth * MoveGenerator.MAX_MOVES];
+        return count(depth, 0);
+    }
+
+    private long count(int depth, int offset) {
+        if (depth == 0)
+            return 1;
+
+        int end = MoveGenerator.generateLegal(position, moves, offset);
+        if (depth == 1)
+            return end - offset; // Bulk count: every legal move is one leaf
+
+        long key = 0;
+        if (hashTable != null) {
+            key = position.getKey();
+            long cached = hashTable.probe(key, depth);
+            if (cached >= 0)
+                return cached;
+        }
+
+        long nodes = 0;
+        for (int i = offset; i < end; i++) {
+            position.makeMove(moves[i]);
+            nodes += count(depth - 1, end);
+            position.unmakeMove();
+        }
+
+        if (hashTable != null)
+            hashTable.store(key, depth, nodes);
+        return nodes;
+    }
+
+    /**
+     * Counts leaf nodes like {@link #count(int)}, printing the count below
+     * each root move.
+     */
+    public long divide(int depth, PrintStream out) {
+        if (depth < 1)
+            return count(depth);
+        if (moves.length < depth * MoveGenerator.MAX_MOVES)
+            moves = new int[depth * MoveGenerator.MAX_MOVES];
+
+        int end = MoveGenerator.generateLegal(position, moves, 0);
+        long total = 0;
+        for (int i = 0; i < end; i++) {
+            position.makeMove(moves[i]);
+            long nodes = count(depth - 1, end);
+            position.unmakeMove();
+            out.println(Moves.toUCI(moves[i]) + ": " + nodes);
+            total += nodes;
+        }
+        out.println();
+        out.println("Moves: " + end);
+        return total;
+    }
+
+    // ------------------ Command Line ------------------
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Usage: java Perft <depth> [FEN] [--divide] [--threads N] [--hash MB]"
+                    + " | java Perft --suite [--threads N] [--hash MB]");
+            return;
+        }
+
+        boolean suite = args[0].equals("--suite");
+        int depth = suite ? 0 : Integer.parseInt(args[0]);
+        boolean divide = false;
+        int threads = 1;
+        int hashMegabytes = 0;
+        StringBuilder fen = new StringBuilder();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--divide"))
+                divide = true;
+            else if (args[i].equals("--threads"))
+                threads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--hash"))
+                hashMegabytes = Integer.parseInt(args[++i]);
+            else
+                fen.append(args[i]).append(' ');
+        }
+
+        PerftHashTable hashTable = hashMegabytes > 0 ? new PerftHashTable(hashMegabytes) : null;
+        if (suite) {
+            System.exit(runSuite(System.out, threads, hashTable) ? 0 : 1);
+        }
+
+        Position position = fen.length() > 0 ? Position.fromFEN(fen.toString()) : Position.startPosition();
+        Bitboards.init();
+
+        long start = System.nanoTime();
+        long nodes;
+        if (threads > 1) {
+            ParallelPerft perft = new ParallelPerft(threads, hashTable);
+            nodes = divide ? perft.divide(position, depth, System.out) : perft.count(position, depth);
+            perft.shutdown();
+        } else {
+            Perft perft = new Perft(position, hashTable);
+            nodes = divide ? perft.divide(depth, System.out) : perft.count(depth);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println("Nodes: " + nodes);
+        System.out.println("Time: " + elapsed / 1_000_000 + " ms");
+        System.out.println("NPS: " + nodesPerSecond(nodes, elapsed));
+        if (hashTable != null)
+            printHashStats(System.out, hashTable);
+    }
+
+    /**
+     * Runs every reference position and reports the result of each. Returns
+     * true if all counts match.
+     */
+    public static boolean runSuite(PrintStream out, int threads, PerftHashTable hashTable) {
+        boolean passed = true;
+        long totalNodes = 0, totalTime = 0;
+        ParallelPerft parallel = threads > 1 ? new ParallelPerft(threads, hashTable) : null;
+        Bitboards.init();
+
+        for (Object[] entry : SUITE) {
+            String fen = (String) entry[0];
+            int depth = (Integer) entry[1];
+            long expected = (Long) entry[2];
+
+            long start = System.nanoTime();
+            Position position = Position.fromFEN(fen);
+            long nodes = parallel != null ? parallel.count(position, depth)
+                    : new Perft(position, hashTable).count(depth);
+            long elapsed = System.nanoTime() - start;
+            totalNodes += nodes;
+            totalTime += elapsed;
+
+            boolean ok = nodes == expected;
+            passed &= ok;
+            out.printf("%s depth %d: %d nodes, expected %d, %s (%d nps)%n",
+                    ok ? "PASS" : "FAIL", depth, nodes, expected, fen, nodesPerSecond(nodes, elapsed));
+        }
+
+        if (parallel != null)
+            parallel.shutdown();
+        out.println((passed ? "All positions passed" : "Some positions FAILED") + ", "
+                + nodesPerSecond(totalNodes, totalTime) + " nps overall");
+        if (hashTable != null)
+            printHashStats(out, hashTable);
+        return passed;
+    }
+
+    private static void printHashStats(PrintStream out, PerftHashTable hashTable) {
+        out.printf("Hash: %d MB, %d probes, %d hits (%.1f%%)%n", hashTable.getSizeMegabytes(),
+                hashTable.getProbes(), hashTable.getHits(), hashTable.getHitRate() * 100);
+    }
+
+    static long nodesPerSecond(long nodes, long nanos) {
+        return nanos > 0 ? nodes * 1_000_000_000L / nanos : 0;
+    }
+}
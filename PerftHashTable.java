@@ -0,0 +1,77 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PerftHashTable caches perft subtree counts by position key and depth, so a
+ * position reached by transposition is only counted once. It has a fixed
+ * number of single-entry buckets and always replaces on store.
+ *
+ * The table is shared by perft worker threads without locks. Each bucket is
+ * two longs: the data word (count and depth) and the key XORed with the data.
+ * A reader only accepts a bucket whose two words XOR back to the key it is
+ * looking for, so a bucket torn by a concurrent write is treated as a miss.
+ */
+public class PerftHashTable {
+    private static final int BUCKET_BYTES = 16;
+
+    private final long[] table; // [2i] = key ^ data, [2i + 1] = data
+    private final int mask; // Number of buckets - 1
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Creates a table using at most the given number of megabytes, rounded
+     * down to a power-of-two bucket count.
+     */
+    public PerftHashTable(int megabytes) {
+        if (megabytes < 1)
+            throw new IllegalArgumentException("Hash size must be at least 1 MB");
+        long buckets = Long.highestOneBit((long) megabytes * 1024 * 1024 / BUCKET_BYTES);
+        buckets = Math.min(buckets, 1L << 29); // Java arrays are int-indexed
+        this.table = new long[(int) buckets * 2];
+        this.mask = (int) buckets - 1;
+    }
+
+    /**
+     * Returns the cached node count for a position key at a depth, or -1 if it
+     * is not in the table.
+     */
+    public long probe(long key, int depth) {
+        probes.increment();
+        int index = ((int) key & mask) << 1;
+        long data = table[index + 1];
+        if ((table[index] ^ data) != key || (int) (data & 0xFF) != depth)
+            return -1;
+        hits.increment();
+        return data >>> 8;
+    }
+
+    /**
+     * Stores a node count, replacing whatever the bucket held.
+     */
+    public void store(long key, int depth, long nodes) {
+        int index = ((int) key & mask) << 1;
+        long data = (nodes << 8) | depth;
+        table[index] = key ^ data;
+        table[index + 1] = data;
+    }
+
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the fraction of probes that found their entry.
+     */
+    public double getHitRate() {
+        long total = probes.sum();
+        return total > 0 ? (double) hits.sum() / total : 0.0;
+    }
+
+    public int getSizeMegabytes() {
+        return (int) ((long) table.length * 8 / (1024 * 1024));
+    }
+}
@@ -25,7 +25,6 @@ public class Piece {
     private Boolean is_selectable;// Is this piece allowed to be selected on this turn?
 
     private Set<String> validMoves; // All legal destination squares for this piece
-    private boolean hasMoved = false; // whether king has moved or not, checks for castling
 
     // Constructor to initialize all required fields and setup visuals
     public Piece(String type, boolean isWhite, int file, int rank, Board board) {
@@ -134,164 +133,27 @@ public class Piece {
         return imgView;
     }
 
-    // ------------------ Move Calculations by Piece Type ------------------
+    // ------------------ Move Calculations ------------------
 
+    /**
+     * Refreshes validMoves from the legal moves of the board's position.
+     */
     public void updateMoves() {
         validMoves.clear();
-        switch (type) {
-            case "Pawn" -> calculatePawnMoves();
-            case "Knight" -> calculateKnightMoves();
-            case "Bishop" -> calculateBishopMoves();
-            case "Rook" -> calculateRookMoves();
-            case "Queen" -> {
-                calculateBishopMoves();
-                calculateRookMoves();
-            }
-            case "King" -> calculateKingMoves();
-        }
-    }
-
-    private void calculatePawnMoves() {
-        int dir = isWhite ? 1 : -1;
-        int startRank = isWhite ? 1 : 6;
-
-        Square fwdOne = board.getSquare(rank + dir, file);
-        if (fwdOne != null && !fwdOne.isOccupied())
-            validMoves.add(fwdOne.getPosition());
-
-        if (rank == startRank) {
-            Square fwdTwo = board.getSquare(rank + 2 * dir, file);
-            if (fwdTwo != null && !fwdTwo.isOccupied() && !fwdOne.isOccupied())
-                validMoves.add(fwdTwo.getPosition());
-        }
-
-        // Diagonal captures
-        if (file > 0) {
-            Square leftCap = board.getSquare(rank + dir, file - 1);
-            if (leftCap != null && leftCap.isOpponentPiece(isWhite))
-                validMoves.add(leftCap.getPosition());
-        }
-
-        if (file < 7) {
-            Square rightCap = board.getSquare(rank + dir, file + 1);
-            if (rightCap != null && rightCap.isOpponentPiece(isWhite))
-                validMoves.add(rightCap.getPosition());
-        }
-    }
-
-    private void calculateKnightMoves() {
-        int[][] moves = {
-                { 2, 1 }, { 2, -1 }, { -2, 1 }, { -2, -1 },
-                { 1, 2 }, { 1, -2 }, { -1, 2 }, { -1, -2 }
-        };
-
-        for (int[] m : moves) {
-            int newFile = file + m[0], newRank = rank + m[1];
-            if (board.isValidSquare(newFile, newRank)) {
-                Square sq = board.getSquare(newRank, newFile);
-                if (!sq.isOccupied() || sq.isOpponentPiece(isWhite)) {
-                    validMoves.add(sq.getPosition());
-                }
-            }
-        }
-    }
-
-    private void calculateRookMoves() {
-        calculateLinearMoves(1, 0); // down
-        calculateLinearMoves(0, 1); // right
-        calculateLinearMoves(-1, 0); // up
-        calculateLinearMoves(0, -1); // left
-    }
-
-    private void calculateBishopMoves() {
-        calculateLinearMoves(-1, -1); // up-left
-        calculateLinearMoves(-1, 1); // up-right
-        calculateLinearMoves(1, -1); // down-left
-        calculateLinearMoves(1, 1); // down-right
-    }
-
-    private void calculateKingMoves() {
-        int[][] moves = {
-                { 1, 0 }, { 0, 1 }, { -1, 0 }, { 0, -1 },
-                { 1, 1 }, { 1, -1 }, { -1, 1 }, { -1, -1 }
-        };
-
-        for (int[] move : moves) {
-            int newF = file + move[0], newR = rank + move[1];
-            if (board.isValidSquare(newF, newR)) {
-                Square sq = board.getSquare(newR, newF);
-                if (!sq.isOccupied() || sq.isOpponentPiece(isWhite))
-                    validMoves.add(sq.getPosition());
-            }
-        }
-        // ---------------- Castling ----------------
-        if (hasMoved)
-            return; // King has moved
-
-        // Kingside Castling
-        if (canCastle(file, rank, 7)) {
-            validMoves.add(board.getChessCoordinate(rank, 6)); // g1/g8
-        }
 
-        // Queenside Castling
-        if (canCastle(file, rank, 0)) {
-            validMoves.add(board.getChessCoordinate(rank, 2)); // c1/c8
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegal(board.getPosition(), moves);
+        int from = Position.square(file, rank);
+        for (int i = 0; i < count; i++) {
+            if (Moves.from(moves[i]) != from)
+                continue;
+            int to = Moves.to(moves[i]);
+            validMoves.add(board.getChessCoordinate(Position.rankOf(to), Position.fileOf(to)));
         }
     }
 
-    private boolean canCastle(int kingFile, int kingRank, int rookFile) {
-        Piece rook = board.getPieceAt(kingRank, rookFile);
-        if (rook == null || !rook.getType().equals("Rook") || rook.hasMoved())
-            return false;
-
-        int direction = (rookFile == 0) ? -1 : 1;
-        int start = kingFile + direction;
-        int end = rookFile;
-
-        // Check squares between king and rook are empty
-        for (int f = start; f != end; f += direction) {
-            if (board.getPieceAt(kingRank, f) != null)
-                return false;
-        }
-
-        // TODO: Check if king is in check or crosses check
-        // Skipped for now
-
-        return true;
-    }
-
-    /**
-     * Handles movement along straight or diagonal paths (used by rook, bishop,
-     * queen)
-     */
-    private void calculateLinearMoves(int dR, int dF) {
-        int newR = rank + dR;
-        int newF = file + dF;
-        while (board.isValidSquare(newF, newR)) {
-            Square sq = board.getSquare(newR, newF);
-            if (sq.isOccupied()) {
-                if (sq.isOpponentPiece(isWhite))
-                    validMoves.add(sq.getPosition());
-                break;
-            }
-            validMoves.add(sq.getPosition());
-            newR += dR;
-            newF += dF;
-        }
-    }
-
-    private void promotePawn(String newType) {
-        this.type = newType;
-        this.value = assignValue(newType);
-        this.icon.setImage(new Image(getClass().getResource(
-                "/resources/icons/" + (isWhite ? "white" : "black") + "_" + newType.toLowerCase() + ".png")
-                .toString()));
-
-        System.out.println((isWhite ? "White" : "Black") + " pawn promoted to " + newType + " at " + position);
-    }
-
     // give choice to user for pawn promotion
-    private void promotePawnWithChoice() {
+    protected String choosePromotion() {
         List<String> choices = List.of("Queen", "Rook", "Bishop", "Knight");
 
         ChoiceDialog<String> dialog = new ChoiceDialog<>("Queen", choices);
@@ -300,7 +162,7 @@ public class Piece {
         dialog.setContentText("Promote to:");
 
         Optional<String> result = dialog.showAndWait();
-        result.ifPresent(this::promotePawn); // Call promotePawn with user choice
+        return result.orElse("Queen"); // Default to a queen if the dialog is dismissed
     }
 
     // ------------------ Movement & Metadata ------------------
@@ -309,23 +171,12 @@ public class Piece {
         this.file = newF;
         this.rank = newR;
         this.position = board.getChessCoordinate(newR, newF);
-        // Check for promotion
-        if (type.equals("Pawn") && (rank == 7 || rank == 0)) {
-            promotePawnWithChoice();
-        }
-        System.out.println(board.getFEN());
     }
 
     public void moveTo(String pos) {
         this.file = pos.charAt(0) - 'A';
         this.rank = Character.getNumericValue(pos.charAt(1)) - 1;
         this.position = pos;
-        // Check for promotion
-        if (type.equals("Pawn") && (rank == 7 || rank == 0)) {
-            promotePawnWithChoice();
-        }
-        System.out.println(board.getFEN());
-
     }
 
     // ------------------ Getters ------------------
@@ -362,14 +213,6 @@ public class Piece {
         return icon;
     }
 
-    public boolean hasMoved() {
-        return hasMoved;
-    }
-
-    public void setMoved(boolean moved) {
-        this.hasMoved = moved;
-    }
-
     @Override
     public String toString() {
         return (isWhite ? "White " : "Black ") + type + " at " + position;
@@ -0,0 +1,187 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * PolyglotBook reads opening moves from a Polyglot ".bin" book. The file is
+ * a sorted array of 16-byte big-endian entries:
+ *
+ *   uint64 key     position key (see {@link PolyglotKeys})
+ *   uint16 move    to square (bits 0-5), from square (6-11), promotion (12-14)
+ *   uint16 weight  how often the move should be chosen, relative to others
+ *   uint32 learn   unused
+ *
+ * The file is memory-mapped rather than read, so opening even a very large
+ * book costs almost nothing and only the pages a lookup touches are loaded.
+ * Lookups binary-search the entries in place. Files over 1 GB are mapped in
+ * several segments, since one mapping is limited to 2 GB.
+ *
+ * Lookups only read the mapping, so one book can be shared by all games and
+ * threads.
+ */
+public class PolyglotBook implements Closeable {
+    public static final int ENTRY_SIZE = 16;
+    public static final int MAX_ENTRIES = MoveGenerator.MAX_MOVES; // Moves returned per position
+
+    private static final int SEGMENT_BITS = 30; // 1 GB segments, a whole number of entries
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long entryCount;
+
+    private PolyglotBook(FileChannel channel, MappedByteBuffer[] segments, long entryCount) {
+        this.channel = channel;
+        this.segments = segments;
+        this.entryCount = entryCount;
+    }
+
+    /**
+     * Maps a book file.
+     *
+     * @throws IOException if the file cannot be opened
+     * @throws IllegalArgumentException if its size is not a whole number of entries
+     */
+    public static PolyglotBook open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size % ENTRY_SIZE != 0)
+                throw new IllegalArgumentException("Not a Polyglot book (size " + size + "): " + path);
+            int count = (int) ((size + (1L << SEGMENT_BITS) - 1) >>> SEGMENT_BITS);
+            MappedByteBuffer[] segments = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long start = (long) i << SEGMENT_BITS;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(1L << SEGMENT_BITS, size - start));
+            }
+            return new PolyglotBook(channel, segments, size / ENTRY_SIZE);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Finds the book moves for a position, storing the encoded moves (see
+     * {@link Moves}) and their weights. Entries whose move is not legal in the
+     * position, as happens with key collisions, are skipped.
+     *
+     * @return the number of moves found, at most {@link #MAX_ENTRIES}
+     */
+    public int probe(Position pos, int[] moves, int[] weights) {
+        long key = PolyglotKeys.key(pos);
+        int[] legal = new int[MoveGenerator.MAX_MOVES];
+        int legalCount = MoveGenerator.generateLegal(pos, legal);
+
+        int count = 0;
+        for (long i = lowerBound(key); i < entryCount && keyAt(i) == key && count < moves.length; i++) {
+            int move = toMove(pos, moveAt(i), legal, legalCount);
+            if (move != Moves.NONE) {
+                moves[count] = move;
+                weights[count] = weightAt(i);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Picks a book move at random in proportion to the weights, or returns
+     * Moves.NONE if the position is not in the book.
+     */
+    public int pickMove(Position pos, Random random) {
+        int[] moves = new int[MAX_ENTRIES];
+        int[] weights = new int[MAX_ENTRIES];
+        int count = probe(pos, moves, weights);
+        long total = 0;
+        for (int i = 0; i < count; i++)
+            total += weights[i];
+        if (total == 0)
+            return count > 0 ? moves[random.nextInt(count)] : Moves.NONE;
+
+        long pick = (long) (random.nextDouble() * total);
+        for (int i = 0; i < count; i++) {
+            pick -= weights[i];
+            if (pick < 0)
+                return moves[i];
+        }
+        return moves[count - 1];
+    }
+
+    /**
+     * Closes the file. The mapping itself is released by the garbage
+     * collector once the book is no longer referenced.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // ------------------ Entries ------------------
+
+    // First entry whose key is not below the given one, comparing keys unsigned
+    private long lowerBound(long key) {
+        long low = 0;
+        long high = entryCount;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(keyAt(mid), key) < 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    private long keyAt(long index) {
+        long offset = index * ENTRY_SIZE;
+        return segments[(int) (offset >>> SEGMENT_BITS)].getLong((int) (offset & ((1L << SEGMENT_BITS) - 1)));
+    }
+
+    private int moveAt(long index) {
+        long offset = index * ENTRY_SIZE + 8;
+        return segments[(int) (offset >>> SEGMENT_BITS)].getShort((int) (offset & ((1L << SEGMENT_BITS) - 1)))
+                & 0xFFFF;
+    }
+
+    private int weightAt(long index) {
+        long offset = index * ENTRY_SIZE + 10;
+        return segments[(int) (offset >>> SEGMENT_BITS)].getShort((int) (offset & ((1L << SEGMENT_BITS) - 1)))
+                & 0xFFFF;
+    }
+
+    /**
+     * Matches a Polyglot move against the legal moves. Polyglot writes
+     * castling as the king taking its own rook (e1h1 for e1g1), and
+     * promotions as 1-4 for knight to queen.
+     */
+    private static int toMove(Position pos, int bookMove, int[] legal, int legalCount) {
+        int to = bookMove & 0x3F;
+        int from = (bookMove >>> 6) & 0x3F;
+        int promotion = (bookMove >>> 12) & 0x7;
+
+        int piece = pos.getPieceAt(from);
+        int target = pos.getPieceAt(to);
+        if (piece != Position.NO_PIECE && target != Position.NO_PIECE && Position.typeOf(piece) == Position.KING
+                && Position.colorOf(target) == Position.colorOf(piece))
+            to = to > from ? from + 2 : from - 2;
+
+        for (int i = 0; i < legalCount; i++) {
+            int move = legal[i];
+            if (Moves.from(move) != from || Moves.to(move) != to)
+                continue;
+            if (promotion == 0 ? !Moves.isPromotion(move)
+                    : Moves.isPromotion(move) && Position.typeOf(Moves.promotion(move)) == promotion)
+                return move;
+        }
+        return Moves.NONE;
+    }
+}
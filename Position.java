@@ -0,0 +1,886 @@
+import java.util.Arrays;
+
+/**
+ * Position is the headless model of a chess position. It stores the board as
+ * twelve 64-bit piece bitboards (one per colour and piece type) plus the side
+ * to move, castling rights, en passant target and move clocks.
+ *
+ * Squares are numbered 0-63 with A1 = 0, B1 = 1, ..., H8 = 63, so bit n of a
+ * bitboard corresponds to square n. The class has no JavaFX dependencies and
+ * can be used on any thread; the GUI Board renders from it.
+ *
+ * A 64-bit Zobrist key identifying the position is kept up to date as pieces
+ * are placed and moves are made and taken back, and so are a key of the pawns
+ * alone and the material plus piece-square score used by {@link Evaluation}.
+ */
+public class Position {
+    // Colours
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    // Piece types
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
+    // Pieces (colour * 6 + type), used as bitboard indices
+    public static final int WHITE_PAWN = 0;
+    public static final int WHITE_KNIGHT = 1;
+    public static final int WHITE_BISHOP = 2;
+    public static final int WHITE_ROOK = 3;
+    public static final int WHITE_QUEEN = 4;
+    public static final int WHITE_KING = 5;
+    public static final int BLACK_PAWN = 6;
+    public static final int BLACK_KNIGHT = 7;
+    public static final int BLACK_BISHOP = 8;
+    public static final int BLACK_ROOK = 9;
+    public static final int BLACK_QUEEN = 10;
+    public static final int BLACK_KING = 11;
+    public static final int NO_PIECE = 12;
+
+    // Castling rights bitmask
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+    public static final int ALL_CASTLING = 15;
+
+    public static final int NO_SQUARE = -1;
+
+    private static final int SIZE = 8;
+    private static final String FEN_CHARS = "PNBRQKpnbrqk";
+    private static final int MAX_HISTORY = 1024; // Initial undo stack depth, grown if a game gets longer
+
+    // Castling rights kept when a piece moves from or to each square
+    private static final int[] CASTLING_MASK = new int[64];
+
+    static {
+        for (int sq = 0; sq < 64; sq++)
+            CASTLING_MASK[sq] = ALL_CASTLING;
+        CASTLING_MASK[0] &= ~WHITE_QUEENSIDE; // A1
+        CASTLING_MASK[4] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE); // E1
+        CASTLING_MASK[7] &= ~WHITE_KINGSIDE; // H1
+        CASTLING_MASK[56] &= ~BLACK_QUEENSIDE; // A8
+        CASTLING_MASK[60] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE); // E8
+        CASTLING_MASK[63] &= ~BLACK_KINGSIDE; // H8
+    }
+
+    private final long[] pieces = new long[12]; // One bitboard per piece
+    private final long[] colors = new long[2]; // Occupancy per colour
+    private long occupied; // Occupancy of both colours
+    private final int[] board = new int[64]; // Piece on each square, NO_PIECE if empty
+
+    private int sideToMove = WHITE;
+    private int castlingRights = 0;
+    private int enPassantTargetSquare = NO_SQUARE; // Square a pawn may capture onto en passant
+
+    // Clock for 50-move rule and full move count
+    private int halfMoveClock = 0;
+    private int fullMoveNumber = 1;
+
+    private long key; // Zobrist key, see Zobrist
+    private long pawnKey; // Zobrist key of the pawns only
+    private int psqt; // Packed material + piece-square score for White, see Evaluation.PSQT
+
+    // Undo stack: the move played at each ply and the state it overwrote
+    private int[] historyMoves = new int[MAX_HISTORY];
+    private int[] historyStates = new int[MAX_HISTORY];
+    private long[] historyKeys = new long[MAX_HISTORY];
+    private int historySize = 0;
+
+    /**
+     * Creates an empty position with white to move.
+     */
+    public Position() {
+        clear();
+    }
+
+    /**
+     * Creates an independent copy of another position, including its undo
+     * stack, so each search or perft thread can work on its own board.
+     */
+    public Position(Position other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, pieces.length);
+        System.arraycopy(other.colors, 0, colors, 0, colors.length);
+        System.arraycopy(other.board, 0, board, 0, board.length);
+        occupied = other.occupied;
+        sideToMove = other.sideToMove;
+        castlingRights = other.castlingRights;
+        enPassantTargetSquare = other.enPassantTargetSquare;
+        halfMoveClock = other.halfMoveClock;
+        fullMoveNumber = other.fullMoveNumber;
+        key = other.key;
+        pawnKey = other.pawnKey;
+        psqt = other.psqt;
+        historyMoves = other.historyMoves.clone();
+        historyStates = other.historyStates.clone();
+        historyKeys = other.historyKeys.clone();
+        historySize = other.historySize;
+    }
+
+    /**
+     * Creates a position set up with the standard initial arrangement.
+     */
+    public static Position startPosition() {
+        Position position = new Position();
+        position.setStartPosition();
+        return position;
+    }
+
+    /**
+     * Removes all pieces and resets side to move, castling rights and clocks.
+     */
+    public void clear() {
+        for (int i = 0; i < pieces.length; i++)
+            pieces[i] = 0L;
+        colors[WHITE] = 0L;
+        colors[BLACK] = 0L;
+        occupied = 0L;
+        for (int sq = 0; sq < 64; sq++)
+            board[sq] = NO_PIECE;
+
+        sideToMove = WHITE;
+        castlingRights = 0;
+        enPassantTargetSquare = NO_SQUARE;
+        halfMoveClock = 0;
+        fullMoveNumber = 1;
+        historySize = 0;
+        key = computeKey();
+        pawnKey = 0L;
+        psqt = 0;
+    }
+
+    /**
+     * Creates a position from a FEN string.
+     *
+     * @throws IllegalArgumentException if the FEN is malformed or describes an
+     *                                  impossible position
+     */
+    public static Position fromFEN(CharSequence fen) {
+        Position position = new Position();
+        position.setFEN(fen);
+        return position;
+    }
+
+    /**
+     * Replaces this position with the one described by a FEN string, parsing
+     * it in a single pass without allocating. The move clocks may be omitted.
+     * If the FEN is rejected the position is left empty.
+     *
+     * @throws IllegalArgumentException if the FEN is malformed or describes an
+     *                                  impossible position
+     */
+    public void setFEN(CharSequence fen) {
+        try {
+            parseFEN(fen);
+        } catch (IllegalArgumentException e) {
+            clear();
+            throw e;
+        }
+    }
+
+    private void parseFEN(CharSequence fen) {
+        clear();
+        int length = fen.length();
+        int i = skipSpaces(fen, 0);
+
+        // Piece placement, rank 8 first
+        int rank = SIZE - 1, file = 0;
+        boolean lastWasDigit = false;
+        for (; i < length && fen.charAt(i) != ' '; i++) {
+            char c = fen.charAt(i);
+            if (c == '/') {
+                if (file != SIZE || rank == 0)
+                    throw badFEN(fen, "rank " + (rank + 1) + " does not have 8 squares");
+                rank--;
+                file = 0;
+                lastWasDigit = false;
+            } else if (c >= '1' && c <= '8') {
+                if (lastWasDigit)
+                    throw badFEN(fen, "consecutive digits in piece placement");
+                file += c - '0';
+                lastWasDigit = true;
+            } else {
+                int piece = FEN_CHARS.indexOf(c);
+                if (piece < 0)
+                    throw badFEN(fen, "unknown piece '" + c + "'");
+                if (file >= SIZE)
+                    throw badFEN(fen, "rank " + (rank + 1) + " has more than 8 squares");
+                putPiece(piece, square(file++, rank));
+                lastWasDigit = false;
+            }
+            if (file > SIZE)
+                throw badFEN(fen, "rank " + (rank + 1) + " has more than 8 squares");
+        }
+        if (rank != 0 || file != SIZE)
+            throw badFEN(fen, "piece placement does not describe 8 ranks");
+
+        // Active colour
+        i = skipSpaces(fen, i);
+        if (i >= length)
+            throw badFEN(fen, "missing side to move");
+        char side = fen.charAt(i++);
+        if (side == 'w')
+            sideToMove = WHITE;
+        else if (side == 'b')
+            sideToMove = BLACK;
+        else
+            throw badFEN(fen, "side to move must be 'w' or 'b'");
+        i = expectFieldEnd(fen, i);
+
+        // Castling rights
+        i = skipSpaces(fen, i);
+        if (i >= length)
+            throw badFEN(fen, "missing castling rights");
+        if (fen.charAt(i) == '-') {
+            i++;
+        } else {
+            for (; i < length && fen.charAt(i) != ' '; i++) {
+                int right = switch (fen.charAt(i)) {
+                    case 'K' -> WHITE_KINGSIDE;
+                    case 'Q' -> WHITE_QUEENSIDE;
+                    case 'k' -> BLACK_KINGSIDE;
+                    case 'q' -> BLACK_QUEENSIDE;
+                    default -> throw badFEN(fen, "unknown castling right '" + fen.charAt(i) + "'");
+                };
+                if ((castlingRights & right) != 0)
+                    throw badFEN(fen, "repeated castling right");
+                castlingRights |= right;
+            }
+        }
+        i = expectFieldEnd(fen, i);
+
+        // En passant target
+        i = skipSpaces(fen, i);
+        if (i >= length)
+            throw badFEN(fen, "missing en passant square");
+        if (fen.charAt(i) == '-') {
+            i++;
+        } else {
+            if (i + 1 >= length)
+                throw badFEN(fen, "bad en passant square");
+            int epFile = fen.charAt(i) - 'a', epRank = fen.charAt(i + 1) - '1';
+            if (epFile < 0 || epFile >= SIZE || epRank != (sideToMove == WHITE ? 5 : 2))
+                throw badFEN(fen, "bad en passant square");
+            enPassantTargetSquare = square(epFile, epRank);
+            i += 2;
+        }
+        i = expectFieldEnd(fen, i);
+
+        // Optional clocks
+        i = skipSpaces(fen, i);
+        if (i < length) {
+            int start = i;
+            halfMoveClock = 0;
+            for (; i < length && fen.charAt(i) != ' '; i++) {
+                char c = fen.charAt(i);
+                if (c < '0' || c > '9' || i - start > 5)
+                    throw badFEN(fen, "bad half-move clock");
+                halfMoveClock = halfMoveClock * 10 + (c - '0');
+            }
+            i = skipSpaces(fen, i);
+            if (i < length) {
+                start = i;
+                fullMoveNumber = 0;
+                for (; i < length && fen.charAt(i) != ' '; i++) {
+                    char c = fen.charAt(i);
+                    if (c < '0' || c > '9' || i - start > 5)
+                        throw badFEN(fen, "bad full move number");
+                    fullMoveNumber = fullMoveNumber * 10 + (c - '0');
+                }
+                if (fullMoveNumber < 1)
+                    throw badFEN(fen, "full move number must be at least 1");
+            }
+            if (skipSpaces(fen, i) < length)
+                throw badFEN(fen, "unexpected text after full move number");
+        }
+
+        validate(fen);
+        key = computeKey();
+    }
+
+    /**
+     * Rejects positions that cannot arise in a game and would break move
+     * generation: wrong king counts, pawns on the back ranks, castling rights
+     * without king and rook at home, an en passant square with no pawn that
+     * could have just double-pushed, or the side not to move being in check.
+     */
+    private void validate(CharSequence fen) {
+        if (Long.bitCount(pieces[WHITE_KING]) != 1 || Long.bitCount(pieces[BLACK_KING]) != 1)
+            throw badFEN(fen, "each side must have exactly one king");
+        if (((pieces[WHITE_PAWN] | pieces[BLACK_PAWN]) & 0xFF000000000000FFL) != 0)
+            throw badFEN(fen, "pawns on the first or eighth rank");
+
+        if ((canCastle(WHITE_KINGSIDE) && (board[4] != WHITE_KING || board[7] != WHITE_ROOK))
+                || (canCastle(WHITE_QUEENSIDE) && (board[4] != WHITE_KING || board[0] != WHITE_ROOK))
+                || (canCastle(BLACK_KINGSIDE) && (board[60] != BLACK_KING || board[63] != BLACK_ROOK))
+                || (canCastle(BLACK_QUEENSIDE) && (board[60] != BLACK_KING || board[56] != BLACK_ROOK)))
+            throw badFEN(fen, "castling rights without king and rook on their squares");
+
+        if (enPassantTargetSquare != NO_SQUARE) {
+            int pushed = sideToMove == WHITE ? enPassantTargetSquare - 8 : enPassantTargetSquare + 8;
+            int pawn = makePiece(sideToMove ^ 1, PAWN);
+            if (board[pushed] != pawn || board[enPassantTargetSquare] != NO_PIECE)
+                throw badFEN(fen, "en passant square without a pawn that just double-pushed");
+        }
+
+        if (isSquareAttacked(getKingSquare(sideToMove ^ 1), sideToMove))
+            throw badFEN(fen, "side not to move is in check");
+    }
+
+    private static int skipSpaces(CharSequence fen, int i) {
+        while (i < fen.length() && fen.charAt(i) == ' ')
+            i++;
+        return i;
+    }
+
+    private static int expectFieldEnd(CharSequence fen, int i) {
+        if (i < fen.length() && fen.charAt(i) != ' ')
+            throw badFEN(fen, "unexpected character '" + fen.charAt(i) + "'");
+        return i;
+    }
+
+    private static IllegalArgumentException badFEN(CharSequence fen, String reason) {
+        return new IllegalArgumentException("Invalid FEN (" + reason + "): " + fen);
+    }
+
+    /**
+     * Places all pieces on their standard initial squares.
+     */
+    public void setStartPosition() {
+        clear();
+
+        int[] backRank = { ROOK, KNIGHT, BISHOP, QUEEN, KING, BISHOP, KNIGHT, ROOK };
+        for (int file = 0; file < SIZE; file++) {
+            putPiece(makePiece(WHITE, backRank[file]), square(file, 0));
+            putPiece(WHITE_PAWN, square(file, 1));
+            putPiece(BLACK_PAWN, square(file, 6));
+            putPiece(makePiece(BLACK, backRank[file]), square(file, 7));
+        }
+
+        castlingRights = ALL_CASTLING;
+        key = computeKey();
+    }
+
+    // ------------------ Piece Placement ------------------
+
+    /**
+     * Puts a piece on an empty square.
+     */
+    public void putPiece(int piece, int square) {
+        long bit = 1L << square;
+        pieces[piece] |= bit;
+        colors[colorOf(piece)] |= bit;
+        occupied |= bit;
+        board[square] = piece;
+        key ^= Zobrist.PIECE_SQUARE[piece][square];
+        if (typeOf(piece) == PAWN)
+            pawnKey ^= Zobrist.PIECE_SQUARE[piece][square];
+        psqt += Evaluation.PSQT[piece][square];
+    }
+
+    /**
+     * Removes whatever piece stands on a square and returns it (NO_PIECE if the
+     * square was empty).
+     */
+    public int removePiece(int square) {
+        int piece = board[square];
+        if (piece == NO_PIECE)
+            return NO_PIECE;
+
+        long bit = 1L << square;
+        pieces[piece] &= ~bit;
+        colors[colorOf(piece)] &= ~bit;
+        occupied &= ~bit;
+        board[square] = NO_PIECE;
+        key ^= Zobrist.PIECE_SQUARE[piece][square];
+        if (typeOf(piece) == PAWN)
+            pawnKey ^= Zobrist.PIECE_SQUARE[piece][square];
+        psqt -= Evaluation.PSQT[piece][square];
+        return piece;
+    }
+
+    /**
+     * Moves the piece on one square to another, removing anything already on
+     * the destination. Returns the captured piece or NO_PIECE.
+     */
+    public int movePiece(int from, int to) {
+        int captured = removePiece(to);
+        int piece = removePiece(from);
+        if (piece != NO_PIECE)
+            putPiece(piece, to);
+        return captured;
+    }
+
+    // ------------------ Make / Unmake ------------------
+
+    /**
+     * Plays an encoded move (see {@link Moves}) that is legal in this position,
+     * updating pieces, castling rights, en passant target and clocks in place.
+     * The overwritten state is pushed on the undo stack for
+     * {@link #unmakeMove()}.
+     */
+    public void makeMove(int move) {
+        if (historySize == historyMoves.length)
+            growHistory();
+        historyMoves[historySize] = move;
+        historyStates[historySize] = packState();
+        historyKeys[historySize] = key;
+        historySize++;
+
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        int piece = Moves.piece(move);
+        int captured = Moves.captured(move);
+        int us = sideToMove;
+
+        if (captured != NO_PIECE)
+            removePiece(Moves.isEnPassant(move) ? enPassantCaptureSquare(to, us) : to);
+        removePiece(from);
+        putPiece(Moves.isPromotion(move) ? Moves.promotion(move) : piece, to);
+
+        if (Moves.isCastling(move)) {
+            int rank = us == WHITE ? 0 : 56;
+            if (to > from)
+                movePiece(rank + 7, rank + 5); // Kingside: rook H to F
+            else
+                movePiece(rank, rank + 3); // Queenside: rook A to D
+        }
+
+        int rights = castlingRights & CASTLING_MASK[from] & CASTLING_MASK[to];
+        key ^= Zobrist.CASTLING[castlingRights] ^ Zobrist.CASTLING[rights];
+        castlingRights = rights;
+
+        if (enPassantTargetSquare != NO_SQUARE)
+            key ^= Zobrist.EN_PASSANT_FILE[fileOf(enPassantTargetSquare)];
+        enPassantTargetSquare = Moves.isDoublePush(move) ? (from + to) >>> 1 : NO_SQUARE;
+        if (enPassantTargetSquare != NO_SQUARE)
+            key ^= Zobrist.EN_PASSANT_FILE[fileOf(enPassantTargetSquare)];
+
+        if (typeOf(piece) == PAWN || captured != NO_PIECE)
+            halfMoveClock = 0;
+        else
+            halfMoveClock++;
+        if (us == BLACK)
+            fullMoveNumber++;
+
+        sideToMove = us ^ 1;
+        key ^= Zobrist.SIDE;
+    }
+
+    /**
+     * Takes back the last move played with {@link #makeMove(int)}.
+     */
+    public void unmakeMove() {
+        historySize--;
+        int move = historyMoves[historySize];
+        unpackState(historyStates[historySize]);
+
+        int from = Moves.from(move);
+        int to = Moves.to(move);
+        int captured = Moves.captured(move);
+        int us = sideToMove ^ 1;
+
+        removePiece(to);
+        putPiece(Moves.piece(move), from);
+        if (captured != NO_PIECE)
+            putPiece(captured, Moves.isEnPassant(move) ? enPassantCaptureSquare(to, us) : to);
+
+        if (Moves.isCastling(move)) {
+            int rank = us == WHITE ? 0 : 56;
+            if (to > from)
+                movePiece(rank + 5, rank + 7);
+            else
+                movePiece(rank + 3, rank);
+        }
+
+        if (us == BLACK)
+            fullMoveNumber--;
+        sideToMove = us;
+        key = historyKeys[historySize];
+    }
+
+    /**
+     * Passes the move to the opponent without moving, as used by null-move
+     * pruning. It is recorded as Moves.NONE on the undo stack and taken back
+     * with {@link #unmakeNullMove()}. The half-move clock restarts so no
+     * repetition is detected across the null move. Not valid in check.
+     */
+    public void makeNullMove() {
+        if (historySize == historyMoves.length)
+            growHistory();
+        historyMoves[historySize] = Moves.NONE;
+        historyStates[historySize] = packState();
+        historyKeys[historySize] = key;
+        historySize++;
+
+        if (enPassantTargetSquare != NO_SQUARE)
+            key ^= Zobrist.EN_PASSANT_FILE[fileOf(enPassantTargetSquare)];
+        enPassantTargetSquare = NO_SQUARE;
+        halfMoveClock = 0;
+        sideToMove ^= 1;
+        key ^= Zobrist.SIDE;
+    }
+
+    public void unmakeNullMove() {
+        historySize--;
+        unpackState(historyStates[historySize]);
+        sideToMove ^= 1;
+        key = historyKeys[historySize];
+    }
+
+    /**
+     * Returns the number of moves on the undo stack.
+     */
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    /**
+     * Returns the last move played, or Moves.NONE if there is none.
+     */
+    public int getLastMove() {
+        return historySize > 0 ? historyMoves[historySize - 1] : Moves.NONE;
+    }
+
+    // The pawn taken en passant stands behind the destination square
+    private static int enPassantCaptureSquare(int to, int us) {
+        return us == WHITE ? to - 8 : to + 8;
+    }
+
+    // Castling (4 bits), en passant square + 1 (7 bits) and half-move clock in one int
+    private int packState() {
+        return castlingRights | ((enPassantTargetSquare + 1) << 4) | (halfMoveClock << 11);
+    }
+
+    private void unpackState(int state) {
+        castlingRights = state & 0xF;
+        enPassantTargetSquare = ((state >>> 4) & 0x7F) - 1;
+        halfMoveClock = state >>> 11;
+    }
+
+    private void growHistory() {
+        historyMoves = Arrays.copyOf(historyMoves, historyMoves.length * 2);
+        historyStates = Arrays.copyOf(historyStates, historyStates.length * 2);
+        historyKeys = Arrays.copyOf(historyKeys, historyKeys.length * 2);
+    }
+
+    // ------------------ Queries ------------------
+
+    public int getPieceAt(int square) {
+        return board[square];
+    }
+
+    public long getPieces(int piece) {
+        return pieces[piece];
+    }
+
+    public long getPieces(int color, int type) {
+        return pieces[makePiece(color, type)];
+    }
+
+    public long getOccupancy(int color) {
+        return colors[color];
+    }
+
+    public long getOccupied() {
+        return occupied;
+    }
+
+    public int getKingSquare(int color) {
+        return Long.numberOfTrailingZeros(pieces[makePiece(color, KING)]);
+    }
+
+    /**
+     * Returns the Zobrist key of this position, maintained incrementally.
+     */
+    public long getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the key the position had before the move played the given
+     * number of plies ago (1 = the last move).
+     */
+    public long getHistoryKey(int pliesAgo) {
+        return historyKeys[historySize - pliesAgo];
+    }
+
+    /**
+     * Returns the Zobrist key of the pawns alone, maintained incrementally.
+     */
+    public long getPawnKey() {
+        return pawnKey;
+    }
+
+    /**
+     * Computes the pawn key from scratch.
+     */
+    public long computePawnKey() {
+        return Zobrist.computePawnKey(this);
+    }
+
+    /**
+     * Returns the packed material and piece-square score for White,
+     * maintained incrementally (see {@link Evaluation#score}).
+     */
+    public int getPsqt() {
+        return psqt;
+    }
+
+    /**
+     * Computes the material and piece-square score from scratch.
+     */
+    public int computePsqt() {
+        int score = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            if (board[sq] != NO_PIECE)
+                score += Evaluation.PSQT[board[sq]][sq];
+        }
+        return score;
+    }
+
+    /**
+     * Computes the Zobrist key of this position from scratch.
+     */
+    public long computeKey() {
+        return Zobrist.compute(this);
+    }
+
+    // ------------------ Attacks ------------------
+
+    /**
+     * Returns all pieces of both colours that attack a square, given an
+     * occupancy (which may differ from the real one, e.g. with the king
+     * removed).
+     */
+    public long attackersTo(int square, long occupancy) {
+        return (Bitboards.pawnAttacks(BLACK, square) & pieces[WHITE_PAWN])
+                | (Bitboards.pawnAttacks(WHITE, square) & pieces[BLACK_PAWN])
+                | (Bitboards.knightAttacks(square) & (pieces[WHITE_KNIGHT] | pieces[BLACK_KNIGHT]))
+                | (Bitboards.kingAttacks(square) & (pieces[WHITE_KING] | pieces[BLACK_KING]))
+                | (Bitboards.bishopAttacks(square, occupancy) & (pieces[WHITE_BISHOP] | pieces[BLACK_BISHOP]
+                        | pieces[WHITE_QUEEN] | pieces[BLACK_QUEEN]))
+                | (Bitboards.rookAttacks(square, occupancy) & (pieces[WHITE_ROOK] | pieces[BLACK_ROOK]
+                        | pieces[WHITE_QUEEN] | pieces[BLACK_QUEEN]));
+    }
+
+    /**
+     * Checks whether any piece of the given colour attacks a square.
+     */
+    public boolean isSquareAttacked(int square, int byColor) {
+        return isSquareAttacked(square, byColor, occupied);
+    }
+
+    /**
+     * Checks whether any piece of the given colour attacks a square, using the
+     * supplied occupancy for sliding pieces.
+     */
+    public boolean isSquareAttacked(int square, int byColor, long occupancy) {
+        int base = byColor * 6;
+        if ((Bitboards.pawnAttacks(byColor ^ 1, square) & pieces[base + PAWN]) != 0)
+            return true;
+        if ((Bitboards.knightAttacks(square) & pieces[base + KNIGHT]) != 0)
+            return true;
+        if ((Bitboards.kingAttacks(square) & pieces[base + KING]) != 0)
+            return true;
+        long queens = pieces[base + QUEEN];
+        if ((Bitboards.bishopAttacks(square, occupancy) & (pieces[base + BISHOP] | queens)) != 0)
+            return true;
+        return (Bitboards.rookAttacks(square, occupancy) & (pieces[base + ROOK] | queens)) != 0;
+    }
+
+    /**
+     * Returns the enemy pieces currently giving check to the side to move.
+     */
+    public long getCheckers() {
+        return attackersTo(getKingSquare(sideToMove), occupied) & colors[sideToMove ^ 1];
+    }
+
+    /**
+     * Checks whether the side to move is in check.
+     */
+    public boolean isInCheck() {
+        return isSquareAttacked(getKingSquare(sideToMove), sideToMove ^ 1);
+    }
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    public void setSideToMove(int color) {
+        if (color != sideToMove)
+            key ^= Zobrist.SIDE;
+        this.sideToMove = color;
+    }
+
+    public boolean isWhiteToMove() {
+        return sideToMove == WHITE;
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    public void setCastlingRights(int castlingRights) {
+        key ^= Zobrist.CASTLING[this.castlingRights] ^ Zobrist.CASTLING[castlingRights];
+        this.castlingRights = castlingRights;
+    }
+
+    public boolean canCastle(int right) {
+        return (castlingRights & right) != 0;
+    }
+
+    public int getEnPassantTargetSquare() {
+        return enPassantTargetSquare;
+    }
+
+    public void setEnPassantTargetSquare(int square) {
+        if (enPassantTargetSquare != NO_SQUARE)
+            key ^= Zobrist.EN_PASSANT_FILE[fileOf(enPassantTargetSquare)];
+        if (square != NO_SQUARE)
+            key ^= Zobrist.EN_PASSANT_FILE[fileOf(square)];
+        this.enPassantTargetSquare = square;
+    }
+
+    public int getHalfMoveClock() {
+        return halfMoveClock;
+    }
+
+    public void setHalfMoveClock(int halfMoveClock) {
+        this.halfMoveClock = halfMoveClock;
+    }
+
+    public int getFullMoveNumber() {
+        return fullMoveNumber;
+    }
+
+    public void setFullMoveNumber(int fullMoveNumber) {
+        this.fullMoveNumber = fullMoveNumber;
+    }
+
+    /**
+     * Generates a FEN (Forsyth-Edwards Notation) string for this position.
+     */
+    public String toFEN() {
+        return writeFEN(new StringBuilder(90)).toString();
+    }
+
+    /**
+     * Appends the FEN of this position to a caller-supplied buffer and returns
+     * it. Reusing one buffer makes writing FENs allocation-free.
+     */
+    public StringBuilder writeFEN(StringBuilder fen) {
+        // Piece placement
+        for (int rank = SIZE - 1; rank >= 0; rank--) {
+            int emptyCount = 0;
+            for (int file = 0; file < SIZE; file++) {
+                int piece = board[square(file, rank)];
+                if (piece != NO_PIECE) {
+                    if (emptyCount > 0) {
+                        fen.append((char) ('0' + emptyCount));
+                        emptyCount = 0;
+                    }
+                    fen.append(FEN_CHARS.charAt(piece));
+                } else {
+                    emptyCount++;
+                }
+            }
+            if (emptyCount > 0)
+                fen.append((char) ('0' + emptyCount));
+            if (rank > 0)
+                fen.append('/');
+        }
+
+        // Active color
+        fen.append(' ').append(sideToMove == WHITE ? 'w' : 'b');
+
+        // Castling rights
+        fen.append(' ');
+        if (canCastle(WHITE_KINGSIDE))
+            fen.append('K');
+        if (canCastle(WHITE_QUEENSIDE))
+            fen.append('Q');
+        if (canCastle(BLACK_KINGSIDE))
+            fen.append('k');
+        if (canCastle(BLACK_QUEENSIDE))
+            fen.append('q');
+        if (castlingRights == 0)
+            fen.append('-');
+
+        // En passant target
+        fen.append(' ');
+        if (enPassantTargetSquare != NO_SQUARE) {
+            fen.append((char) ('a' + fileOf(enPassantTargetSquare)));
+            fen.append((char) ('1' + rankOf(enPassantTargetSquare)));
+        } else
+            fen.append('-');
+
+        // Half-move clock and full move number
+        fen.append(' ').append(halfMoveClock).append(' ').append(fullMoveNumber);
+
+        return fen;
+    }
+
+    @Override
+    public String toString() {
+        return toFEN();
+    }
+
+    // ------------------ Static Helpers ------------------
+
+    public static int square(int file, int rank) {
+        return rank * SIZE + file;
+    }
+
+    public static int fileOf(int square) {
+        return square & 7;
+    }
+
+    public static int rankOf(int square) {
+        return square >>> 3;
+    }
+
+    public static int makePiece(int color, int type) {
+        return color * 6 + type;
+    }
+
+    public static int colorOf(int piece) {
+        return piece < 6 ? WHITE : BLACK;
+    }
+
+    public static int typeOf(int piece) {
+        return piece < 6 ? piece : piece - 6;
+    }
+
+    /**
+     * Returns the FEN letter for a piece (upper case for white).
+     */
+    public static char pieceChar(int piece) {
+        return FEN_CHARS.charAt(piece);
+    }
+
+    /**
+     * Converts a square index to lower-case algebraic notation like "e4".
+     */
+    public static String squareName(int square) {
+        return "" + (char) ('a' + fileOf(square)) + (char) ('1' + rankOf(square));
+    }
+
+    /**
+     * Converts algebraic notation ("e4" or "E4") to a square index, or
+     * NO_SQUARE if the text is not a square.
+     */
+    public static int parseSquare(String name) {
+        if (name == null || name.length() != 2)
+            return NO_SQUARE;
+        int file = Character.toLowerCase(name.charAt(0)) - 'a';
+        int rank = name.charAt(1) - '1';
+        if (file < 0 || file >= SIZE || rank < 0 || rank >= SIZE)
+            return NO_SQUARE;
+        return square(file, rank);
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * SPRT runs a sequential probability ratio test on match results to decide,
+ * with as few games as possible, whether an engine is at least elo1 stronger
+ * than its opponent (hypothesis H1) or at most elo0 (H0), with error rates
+ * alpha and beta. After each game the log-likelihood ratio is compared with
+ * the bounds ln(beta / (1 - alpha)) and ln((1 - beta) / alpha); the test
+ * stops once it leaves that interval.
+ *
+ * The ratio uses the normal approximation of the logistic Elo model over
+ * win/draw/loss results used by common testing frameworks:
+ *
+ *   LLR = n * (s1 - s0) * (2s - s0 - s1) / (2 * var)
+ *
+ * where s is the mean score, var its per-game variance and s0, s1 the
+ * expected scores at elo0 and elo1. While the results do not vary yet
+ * (e.g. only wins so far) that variance is 0, so for the ratio alone half a
+ * game is then added to each outcome. A one-sided match still decides, and
+ * once the results vary the ratio is the plain one.
+ */
+public class SPRT {
+    // Test states
+    public static final int CONTINUE = 0;
+    public static final int ACCEPT_H0 = -1; // Not elo1 stronger
+    public static final int ACCEPT_H1 = 1; // At least elo1 stronger
+
+    private static final double Z_95 = 1.959964; // Two-sided 95% quantile of the normal distribution
+    private static final double PRIOR = 0.5; // Games added to each outcome while the results do not vary
+
+    private final double elo0;
+    private final double elo1;
+    private final double lowerBound;
+    private final double upperBound;
+    private int wins;
+    private int draws;
+    private int losses;
+    private int decision = CONTINUE; // Kept once reached, even if more results come in
+
+    public SPRT(double elo0, double elo1, double alpha, double beta) {
+        if (elo1 <= elo0)
+            throw new IllegalArgumentException("elo1 must be greater than elo0");
+        if (alpha <= 0 || alpha >= 1 || beta <= 0 || beta >= 1)
+            throw new IllegalArgumentException("alpha and beta must be between 0 and 1");
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.lowerBound = Math.log(beta / (1 - alpha));
+        this.upperBound = Math.log((1 - beta) / alpha);
+    }
+
+    /**
+     * Records a game from the tested engine's side: 1 for a win, 0.5 for a
+     * draw, 0 for a loss. Returns the test's state afterwards.
+     */
+    public int addResult(double score) {
+        if (score > 0.75)
+            wins++;
+        else if (score < 0.25)
+            losses++;
+        else
+            draws++;
+        if (decision == CONTINUE) {
+            double llr = getLLR();
+            if (llr >= upperBound)
+                decision = ACCEPT_H1;
+            else if (llr <= lowerBound)
+                decision = ACCEPT_H0;
+        }
+        return decision;
+    }
+
+    /**
+     * Returns the log-likelihood ratio of H1 against H0, 0 before any games.
+     */
+    public double getLLR() {
+        if (getGames() == 0)
+            return 0;
+        double w = wins, d = draws, l = losses;
+        if (w + d == 0 || d + l == 0 || w + l == 0) { // Only one kind of result so far
+            w += PRIOR;
+            d += PRIOR;
+            l += PRIOR;
+        }
+        double games = w + d + l;
+        double score = (w + d / 2) / games;
+        double variance = (w + d / 4) / games - score * score;
+        double s0 = expectedScore(elo0);
+        double s1 = expectedScore(elo1);
+        return games * (s1 - s0) * (2 * score - s0 - s1) / (2 * variance);
+    }
+
+    /**
+     * Returns the estimated Elo difference, infinite after only wins or
+     * only losses.
+     */
+    public double getElo() {
+        return elo(getScore());
+    }
+
+    /**
+     * Returns the half width of the 95% confidence interval of the Elo
+     * difference.
+     */
+    public double getEloError() {
+        int games = getGames();
+        double score = getScore();
+        if (games == 0 || score == 0 || score == 1)
+            return Double.POSITIVE_INFINITY;
+        double deviation = Math.sqrt(Math.max((wins + draws / 4.0) / games - score * score, 0) / games);
+        return (elo(Math.min(score + Z_95 * deviation, 1)) - elo(Math.max(score - Z_95 * deviation, 0))) / 2;
+    }
+
+    /**
+     * Returns the mean score of the tested engine, 0 to 1.
+     */
+    public double getScore() {
+        int games = getGames();
+        return games == 0 ? 0.5 : (wins + draws / 2.0) / games;
+    }
+
+    public int getDecision() {
+        return decision;
+    }
+
+    public int getGames() {
+        return wins + draws + losses;
+    }
+
+    public int getWins() {
+        return wins;
+    }
+
+    public int getDraws() {
+        return draws;
+    }
+
+    public int getLosses() {
+        return losses;
+    }
+
+    public double getLowerBound() {
+        return lowerBound;
+    }
+
+    public double getUpperBound() {
+        return upperBound;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("+%d =%d -%d  Elo %.1f +/- %.1f  LLR %.2f [%.2f, %.2f] (%.0f, %.0f)", wins, draws,
+                losses, getElo(), getEloError(), getLLR(), lowerBound, upperBound, elo0, elo1);
+    }
+
+    /**
+     * Checks that one-sided matches decide: only wins must accept H1 and
+     * only losses H0, for "elo0 elo1" as given or 0 and 5 by default.
+     */
+    public static void main(String[] args) {
+        double elo0 = args.length > 1 ? Double.parseDouble(args[0]) : 0;
+        double elo1 = args.length > 1 ? Double.parseDouble(args[1]) : 5;
+        boolean passed = true;
+        double[] scores = { 1, 0 };
+        int[] expected = { ACCEPT_H1, ACCEPT_H0 };
+        for (int i = 0; i < scores.length; i++) {
+            SPRT sprt = new SPRT(elo0, elo1, 0.05, 0.05);
+            while (sprt.getDecision() == CONTINUE && sprt.getGames() < 10000)
+                sprt.addResult(scores[i]);
+            boolean ok = sprt.getDecision() == expected[i];
+            passed &= ok;
+            System.out.printf("%s only %s: decided after %d games, %s%n", ok ? "PASS" : "FAIL",
+                    scores[i] == 1 ? "wins" : "losses", sprt.getGames(), sprt);
+        }
+        System.out.println(passed ? "All checks passed" : "Some checks FAILED");
+        System.exit(passed ? 0 : 1);
+    }
+
+    // ------------------ Helpers ------------------
+
+    private static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    private static double elo(double score) {
+        return -400 * Math.log10(1 / score - 1);
+    }
+}
@@ -0,0 +1,576 @@
+/**
+ * Search finds the best move in a position with a principal variation
+ * alpha-beta search, driven by iterative deepening and finished off by a
+ * quiescence search over captures. It stops at the depth, time or node limit
+ * given in {@link SearchLimits}, or when {@link #stop()} is called from
+ * another thread. On a clock, a {@link TimeManager} decides between
+ * iterations whether to go on, and the clock is read only every few
+ * thousand nodes.
+ *
+ * Results are kept in a {@link TranspositionTable}, which may be shared with
+ * other Search objects. A Search object keeps its own copy of the position
+ * and preallocated move buffers, so one instance should be used by one
+ * thread at a time.
+ */
+public class Search {
+    public static final int MAX_PLY = 128;
+    public static final int INFINITE = 32001;
+    public static final int MATE = 32000; // Mate at ply n scores MATE - n
+    public static final int MATE_BOUND = MATE - MAX_PLY; // Scores beyond this are mates
+
+    public static final int DEFAULT_HASH_MB = 16;
+
+    private static final int CHECK_INTERVAL = 2048; // Nodes between clock checks, a power of two
+
+    private static final int ASPIRATION_DEPTH = 4; // First depth searched with a narrow window
+    private static final int ASPIRATION_WINDOW = 25; // Initial half-width in centipawns
+    private static final int NULL_MOVE_DEPTH = 3; // Minimum depth for a null move
+    private static final int REVERSE_FUTILITY_DEPTH = 6;
+    private static final int REVERSE_FUTILITY_MARGIN = 80; // Per ply of depth
+    private static final int[] FUTILITY_MARGIN = {0, 150, 300, 450}; // By depth; deeper nodes are not pruned
+    private static final int LMR_DEPTH = 3; // Minimum depth for a reduction
+    private static final int LMR_MOVES = 3; // Moves searched at full depth before reducing
+
+    // Late move reductions by depth and move number, growing with the log of both
+    private static final int[][] REDUCTIONS = new int[MAX_PLY][64];
+
+    static {
+        for (int depth = 1; depth < MAX_PLY; depth++) {
+            for (int moves = 1; moves < 64; moves++)
+                REDUCTIONS[depth][moves] = (int) (0.75 + Math.log(depth) * Math.log(moves) / 2.25);
+        }
+    }
+
+    private final TranspositionTable tt;
+    private Position pos;
+    private final MovePicker[] pickers = new MovePicker[MAX_PLY]; // One per ply
+    private final int[][] triedQuiets = new int[MAX_PLY][64]; // Quiet moves searched so far, per ply
+    private final MoveHistory history = new MoveHistory();
+    private Evaluator evaluator = new ClassicEvaluator(); // Per thread
+    private SearchOptions options = new SearchOptions();
+    private Tablebase tablebase; // Null for none
+    private long tablebaseHits;
+    private final int[][] pvTable = new int[MAX_PLY][MAX_PLY];
+    private final int[] pvLength = new int[MAX_PLY];
+    private final int[] previousPv = new int[MAX_PLY]; // PV of the last completed iteration
+    private int previousPvLength;
+    private final boolean[] onPv = new boolean[MAX_PLY]; // True while the moves so far follow previousPv
+
+    private SearchListener listener;
+    private volatile boolean stopped;
+    private long nodes;
+    private long nodeLimit;
+    private long startTime;
+    private long deadline; // System.nanoTime() after which the search stops, 0 for none
+
+    public Search() {
+        this(new TranspositionTable(DEFAULT_HASH_MB));
+    }
+
+    public Search(TranspositionTable tt) {
+        this.tt = tt;
+        for (int i = 0; i < MAX_PLY; i++)
+            pickers[i] = new MovePicker();
+    }
+
+    /**
+     * Sets the listener that receives a report after each iteration.
+     */
+    public void setListener(SearchListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Asks a running search to stop as soon as possible. The best move from the
+     * last completed iteration is returned.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return tt;
+    }
+
+    public MoveHistory getHistory() {
+        return history;
+    }
+
+    public Evaluator getEvaluator() {
+        return evaluator;
+    }
+
+    public Tablebase getTablebase() {
+        return tablebase;
+    }
+
+    /**
+     * Sets the endgame tables probed inside the search, or null for none.
+     */
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    /**
+     * Returns the positions answered from the endgame tables in the current
+     * or last search.
+     */
+    public long getTablebaseHits() {
+        return tablebaseHits;
+    }
+
+    public SearchOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Selects the pruning and reduction features used from the next search on.
+     */
+    public void setOptions(SearchOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * Sets the evaluator used from the next search on. It must not be shared
+     * with another thread.
+     */
+    public void setEvaluator(Evaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Searches a position and returns the best move found, or Moves.NONE if the
+     * side to move has no legal moves. The given position is not modified.
+     */
+    public int search(Position root, SearchLimits limits) {
+        tt.newSearch();
+        reset();
+        return iterate(root, limits, 1);
+    }
+
+    /**
+     * Clears the stop flag ahead of {@link #iterate}. Kept separate so a
+     * {@link ParallelSearch} can reset every thread before any of them can be
+     * stopped.
+     */
+    void reset() {
+        stopped = false;
+    }
+
+    /**
+     * Runs iterative deepening from startDepth up to the depth limit, without
+     * touching the stop flag or the table's search age.
+     */
+    int iterate(Position root, SearchLimits limits, int startDepth) {
+        pos = new Position(root);
+        evaluator.reset(pos);
+        nodes = 0;
+        tablebaseHits = 0;
+        nodeLimit = limits.getNodes();
+        startTime = System.nanoTime();
+        TimeManager time = new TimeManager(limits, pos.getSideToMove(), startTime);
+        deadline = time.getHardDeadline();
+        previousPvLength = 0;
+        history.newSearch();
+
+        int[] rootMoves = new int[MoveGenerator.MAX_MOVES];
+        int rootMoveCount = MoveGenerator.generateLegal(pos, rootMoves);
+        int maxDepth = limits.getDepth() > 0 ? Math.min(limits.getDepth(), MAX_PLY - 1) : MAX_PLY - 1;
+        int bestMove = Moves.NONE;
+
+        int score = 0;
+        for (int depth = startDepth; depth <= maxDepth; depth++) {
+            score = searchRoot(depth, score);
+            if (stopped) {
+                // A partial iteration is not reported. If none has finished, the best root
+                // move searched in full, if any, beats an arbitrary one
+                if (bestMove == Moves.NONE && pvLength[0] > 0)
+                    bestMove = pvTable[0][0];
+                break;
+            }
+
+            previousPvLength = pvLength[0];
+            System.arraycopy(pvTable[0], 0, previousPv, 0, previousPvLength);
+            if (previousPvLength > 0)
+                bestMove = previousPv[0];
+
+            if (listener != null)
+                listener.iterationComplete(depth, score, nodes, elapsedMillis(), previousPv, previousPvLength);
+
+            if (previousPvLength == 0 || Math.abs(score) >= MATE_BOUND)
+                break; // No moves, or a forced mate has been found
+            if (time.iterationComplete(bestMove, System.nanoTime()))
+                break; // Out of time for this move, allowing for how settled the best move is
+            if (time.isTimed() && rootMoveCount == 1)
+                break; // Forced move: save the clock
+        }
+
+        if (bestMove == Moves.NONE && rootMoveCount > 0)
+            bestMove = rootMoves[0]; // Stopped before the first iteration finished
+        return bestMove;
+    }
+
+    /**
+     * Searches the root to the given depth. With aspiration windows, deeper
+     * iterations start with a narrow window around the previous score and
+     * widen it on the side that failed until the score falls inside.
+     */
+    private int searchRoot(int depth, int previousScore) {
+        int delta = ASPIRATION_WINDOW;
+        int alpha = -INFINITE;
+        int beta = INFINITE;
+        if (options.isAspirationWindows() && depth >= ASPIRATION_DEPTH && Math.abs(previousScore) < MATE_BOUND) {
+            alpha = Math.max(previousScore - delta, -INFINITE);
+            beta = Math.min(previousScore + delta, INFINITE);
+        }
+        while (true) {
+            onPv[0] = true;
+            int score = alphaBeta(depth, 0, alpha, beta);
+            if (stopped)
+                return score;
+            if (score <= alpha && alpha > -INFINITE) {
+                beta = (alpha + beta) / 2;
+                alpha = Math.max(score - delta, -INFINITE);
+            } else if (score >= beta && beta < INFINITE) {
+                beta = Math.min(score + delta, INFINITE);
+            } else {
+                return score;
+            }
+            delta *= 2;
+        }
+    }
+
+    // ------------------ Alpha-Beta ------------------
+
+    private int alphaBeta(int depth, int ply, int alpha, int beta) {
+        pvLength[ply] = 0;
+        if (ply > 0 && isDraw())
+            return 0;
+
+        // Small endgames are answered exactly by the tables
+        if (ply > 0 && tablebase != null && Long.bitCount(pos.getOccupied()) <= tablebase.getMaxPieces()) {
+            int code = tablebase.probe(pos);
+            if (code != Tablebase.UNKNOWN) {
+                tablebaseHits++;
+                return Tablebase.score(code, ply);
+            }
+        }
+
+        boolean inCheck = pos.isInCheck();
+        if (inCheck)
+            depth++; // Check extension
+        if (depth <= 0 || ply >= MAX_PLY - 1)
+            return quiescence(ply, alpha, beta);
+
+        nodes++;
+        if (shouldStop())
+            return 0;
+
+        // A deep enough stored result ends the search here, except on the PV
+        boolean pvNode = beta - alpha > 1;
+        long entry = tt.probe(pos.getKey());
+        int hashMove = Moves.NONE;
+        if (entry != 0) {
+            hashMove = TranspositionTable.move(entry);
+            if (!pvNode && ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = scoreFromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha))
+                    return score;
+            }
+        }
+
+        // Static evaluation for the pruning decisions below, which are never
+        // made on the PV or in check
+        boolean prunable = !pvNode && !inCheck;
+        int staticEval = prunable ? evaluator.evaluate(pos) : -INFINITE;
+
+        // Reverse futility: far enough above beta that a quiet move will not
+        // lose it all within the remaining depth
+        if (prunable && options.isFutilityPruning() && depth <= REVERSE_FUTILITY_DEPTH
+                && Math.abs(beta) < MATE_BOUND && staticEval - REVERSE_FUTILITY_MARGIN * depth >= beta)
+            return staticEval;
+
+        // Null move: if passing still fails high at reduced depth, a real move
+        // will too. Skipped without pieces, where zugzwang is likely, and
+        // straight after another null move
+        if (prunable && options.isNullMove() && depth >= NULL_MOVE_DEPTH && staticEval >= beta
+                && pos.getLastMove() != Moves.NONE && hasPieces(pos.getSideToMove())) {
+            int reduction = 3 + depth / 6;
+            onPv[ply + 1] = false;
+            pos.makeNullMove();
+            evaluator.makeNullMove();
+            int score = -alphaBeta(depth - 1 - reduction, ply + 1, -beta, -beta + 1);
+            pos.unmakeNullMove();
+            evaluator.unmakeMove();
+            if (stopped)
+                return 0;
+            if (score >= beta)
+                return score >= MATE_BOUND ? beta : score; // Unproven mates are not trusted
+        }
+
+        // Futility: too far below alpha for a quiet move to catch up
+        boolean futile = prunable && options.isFutilityPruning() && depth < FUTILITY_MARGIN.length
+                && Math.abs(alpha) < MATE_BOUND && staticEval + FUTILITY_MARGIN[depth] <= alpha;
+
+        int pvMove = onPv[ply] && ply < previousPvLength ? previousPv[ply] : Moves.NONE;
+        MovePicker picker = pickers[ply];
+        picker.init(pos, pvMove != Moves.NONE ? pvMove : hashMove, history, ply);
+        int previousMove = pos.getLastMove();
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITE;
+        int bestMove = Moves.NONE;
+        int searched = 0;
+        int quietCount = 0;
+        int[] quiets = triedQuiets[ply];
+        int move;
+        while ((move = picker.next(history)) != Moves.NONE) {
+            onPv[ply + 1] = move == pvMove && pvMove != Moves.NONE;
+            boolean quiet = Moves.isQuiet(move);
+            pos.makeMove(move);
+            boolean givesCheck = pos.isInCheck();
+            if (futile && quiet && !givesCheck && searched > 0) {
+                pos.unmakeMove();
+                continue;
+            }
+            evaluator.makeMove(move);
+            int score;
+            if (searched == 0) {
+                score = -alphaBeta(depth - 1, ply + 1, -beta, -alpha);
+            } else {
+                // Late quiet moves are searched shallower first, and again at
+                // full depth only if they beat alpha
+                int reduction = 0;
+                if (options.isLateMoveReductions() && quiet && !inCheck && !givesCheck && depth >= LMR_DEPTH
+                        && searched >= LMR_MOVES) {
+                    reduction = REDUCTIONS[Math.min(depth, MAX_PLY - 1)][Math.min(searched, 63)];
+                    if (pvNode)
+                        reduction--;
+                    reduction = Math.max(0, Math.min(reduction, depth - 2));
+                }
+                // Null window: prove the move is no better than the first one
+                score = -alphaBeta(depth - 1 - reduction, ply + 1, -alpha - 1, -alpha);
+                if (reduction > 0 && score > alpha)
+                    score = -alphaBeta(depth - 1, ply + 1, -alpha - 1, -alpha);
+                if (score > alpha && score < beta)
+                    score = -alphaBeta(depth - 1, ply + 1, -beta, -alpha);
+            }
+            pos.unmakeMove();
+            evaluator.unmakeMove();
+            searched++;
+
+            if (stopped)
+                return 0;
+
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    bestMove = move;
+                    updatePv(ply, move);
+                    if (score >= beta) {
+                        if (quiet)
+                            history.update(ply, move, previousMove, depth, quiets, quietCount);
+                        break; // Beta cutoff
+                    }
+                }
+            }
+            if (quiet && quietCount < quiets.length)
+                quiets[quietCount++] = move;
+        }
+
+        if (searched == 0)
+            return inCheck ? -MATE + ply : 0; // Checkmate or stalemate
+
+        int bound = bestScore >= beta ? TranspositionTable.LOWER
+                : bestScore > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        tt.store(pos.getKey(), depth, scoreToTable(bestScore, ply), bound, bestMove);
+        return bestScore;
+    }
+
+    /**
+     * Searches captures and promotions until the position is quiet, so the
+     * static evaluation is never taken in the middle of an exchange.
+     */
+    private int quiescence(int ply, int alpha, int beta) {
+        pvLength[ply] = 0;
+        nodes++;
+        if (shouldStop())
+            return 0;
+
+        int standPat = evaluator.evaluate(pos);
+        if (standPat >= beta || ply >= MAX_PLY - 1)
+            return standPat;
+        if (standPat > alpha)
+            alpha = standPat;
+
+        MovePicker picker = pickers[ply];
+        picker.initNoisy(pos);
+        int move;
+        while ((move = picker.next(history)) != Moves.NONE) {
+            pos.makeMove(move);
+            evaluator.makeMove(move);
+            int score = -quiescence(ply + 1, -beta, -alpha);
+            pos.unmakeMove();
+            evaluator.unmakeMove();
+
+            if (stopped)
+                return 0;
+            if (score > alpha) {
+                alpha = score;
+                if (score >= beta)
+                    break;
+            }
+        }
+        return alpha;
+    }
+
+    // ------------------ Helpers ------------------
+
+    /**
+     * Mate scores are stored relative to the position rather than the root, so
+     * they stay correct when the position is reached at another ply.
+     */
+    private static int scoreToTable(int score, int ply) {
+        if (score >= MATE_BOUND)
+            return score + ply;
+        if (score <= -MATE_BOUND)
+            return score - ply;
+        return score;
+    }
+
+    private static int scoreFromTable(int score, int ply) {
+        if (score >= MATE_BOUND)
+            return score - ply;
+        if (score <= -MATE_BOUND)
+            return score + ply;
+        return score;
+    }
+
+    private void updatePv(int ply, int move) {
+        pvTable[ply][0] = move;
+        System.arraycopy(pvTable[ply + 1], 0, pvTable[ply], 1, pvLength[ply + 1]);
+        pvLength[ply] = pvLength[ply + 1] + 1;
+    }
+
+    /**
+     * Fifty-move rule or a repetition of an earlier position. Only positions
+     * with the same side to move since the last irreversible move can repeat.
+     */
+    private boolean isDraw() {
+        int clock = pos.getHalfMoveClock();
+        if (clock >= 100)
+            return true;
+        long key = pos.getKey();
+        int limit = Math.min(clock, pos.getHistorySize());
+        for (int i = 2; i <= limit; i += 2) {
+            if (pos.getHistoryKey(i) == key)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Whether a side has anything besides pawns and its king.
+     */
+    private boolean hasPieces(int color) {
+        return (pos.getOccupancy(color) & ~pos.getPieces(color, Position.PAWN)
+                & ~pos.getPieces(color, Position.KING)) != 0;
+    }
+
+    private boolean shouldStop() {
+        if (stopped)
+            return true;
+        if ((nodes & (CHECK_INTERVAL - 1)) == 0) {
+            if ((deadline != 0 && System.nanoTime() >= deadline) || (nodeLimit != 0 && nodes >= nodeLimit))
+                stopped = true;
+        }
+        return stopped;
+    }
+
+    private long elapsedMillis() {
+        return (System.nanoTime() - startTime) / 1_000_000;
+    }
+
+    // ------------------ Benchmark ------------------
+
+    static final String[] BENCH_POSITIONS = { // Also walked by PawnHashTable's benchmark
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1PN2/PP1B1PPP/R2QKB1R w KQ - 0 8",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1",
+    };
+
+    /**
+     * Searches the benchmark positions to a fixed depth (first argument,
+     * default 6) with no selective features, each feature on its own, and all
+     * of them, printing the nodes and effective branching factor of each. The
+     * branching factor is how many times more nodes the search to the final
+     * depth took than the search one ply shallower, averaged over the
+     * positions, and the transposition and pawn hash hit rates are over all
+     * of them. Tables start
+     * empty for every search so the runs are comparable.
+     */
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        Bitboards.init();
+
+        String[] names = {"none", "null move", "lmr", "futility", "aspiration", "all"};
+        SearchOptions[] configs = {
+                SearchOptions.none(),
+                new SearchOptions(true, false, false, false),
+                new SearchOptions(false, true, false, false),
+                new SearchOptions(false, false, true, false),
+                new SearchOptions(false, false, false, true),
+                new SearchOptions(),
+        };
+
+        Search search = new Search();
+        ClassicEvaluator evaluator = new ClassicEvaluator();
+        search.setEvaluator(evaluator);
+        PawnHashTable pawnTable = evaluator.getPawnTable();
+        long baseline = 0;
+        System.out.printf("%-12s %12s %8s %8s %8s %8s %8s%n", "features", "nodes", "vs none", "ebf", "tt hit",
+                "pawn hit", "ms");
+        for (int c = 0; c < configs.length; c++) {
+            search.setOptions(configs[c]);
+            long nodes = 0;
+            double ebf = 0;
+            long ttProbes = 0, ttHits = 0;
+            long pawnProbes = 0, pawnHits = 0;
+            long start = System.nanoTime();
+            for (String fen : BENCH_POSITIONS) {
+                search.getTranspositionTable().clear();
+                search.getHistory().clear();
+                pawnTable.clear();
+                long[] iterationNodes = new long[2]; // Nodes up to the last two depths
+                search.setListener((d, score, n, millis, pv, length) -> {
+                    iterationNodes[0] = iterationNodes[1];
+                    iterationNodes[1] = n;
+                });
+                search.search(Position.fromFEN(fen), SearchLimits.depth(depth));
+                nodes += search.getNodes();
+                ebf += (double) iterationNodes[1] / Math.max(iterationNodes[0], 1);
+                ttProbes += search.getTranspositionTable().getProbes();
+                ttHits += search.getTranspositionTable().getHits();
+                pawnProbes += pawnTable.getProbes();
+                pawnHits += pawnTable.getHits();
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            if (c == 0)
+                baseline = nodes;
+            System.out.printf("%-12s %12d %7.1f%% %8.2f %7.1f%% %7.1f%% %8d%n", names[c], nodes,
+                    100.0 * nodes / baseline, ebf / BENCH_POSITIONS.length, 100.0 * ttHits / Math.max(ttProbes, 1),
+                    100.0 * pawnHits / Math.max(pawnProbes, 1), millis);
+        }
+    }
+}
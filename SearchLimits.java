@@ -0,0 +1,77 @@
+/**
+ * SearchLimits tells the search when to stop: a maximum depth, a time budget
+ * for the move, a node budget, or the game clock (time left and increment
+ * for each side, and optionally the moves until the next time control), from
+ * which {@link TimeManager} works out a budget. A value of zero means no
+ * limit of that kind.
+ */
+public class SearchLimits {
+    private final int depth; // Maximum iterative deepening depth
+    private final long moveTimeMillis; // Time allowed for this move
+    private final long nodes; // Node budget
+    private final long[] timeMillis; // Clock time left, by color
+    private final long[] incrementMillis; // Increment per move, by color
+    private final int movesToGo; // Moves until the next time control, 0 for sudden death
+
+    public SearchLimits(int depth, long moveTimeMillis, long nodes) {
+        this(depth, moveTimeMillis, nodes, 0, 0, 0, 0, 0);
+    }
+
+    public SearchLimits(int depth, long moveTimeMillis, long nodes, long whiteTimeMillis, long blackTimeMillis,
+            long whiteIncrementMillis, long blackIncrementMillis, int movesToGo) {
+        this.depth = depth;
+        this.moveTimeMillis = moveTimeMillis;
+        this.nodes = nodes;
+        this.timeMillis = new long[] {whiteTimeMillis, blackTimeMillis};
+        this.incrementMillis = new long[] {whiteIncrementMillis, blackIncrementMillis};
+        this.movesToGo = movesToGo;
+    }
+
+    public static SearchLimits depth(int depth) {
+        return new SearchLimits(depth, 0, 0);
+    }
+
+    public static SearchLimits moveTime(long millis) {
+        return new SearchLimits(0, millis, 0);
+    }
+
+    /**
+     * Limits for playing on a clock.
+     */
+    public static SearchLimits clock(long whiteTimeMillis, long blackTimeMillis, long whiteIncrementMillis,
+            long blackIncrementMillis, int movesToGo) {
+        return new SearchLimits(0, 0, 0, whiteTimeMillis, blackTimeMillis, whiteIncrementMillis,
+                blackIncrementMillis, movesToGo);
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getMoveTimeMillis() {
+        return moveTimeMillis;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getTimeMillis(int color) {
+        return timeMillis[color];
+    }
+
+    public long getIncrementMillis(int color) {
+        return incrementMillis[color];
+    }
+
+    public int getMovesToGo() {
+        return movesToGo;
+    }
+
+    /**
+     * Whether the search is playing on a clock for the given side.
+     */
+    public boolean hasClock(int color) {
+        return timeMillis[color] > 0;
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * Receives a report from the search after each completed iteration of
+ * iterative deepening.
+ */
+public interface SearchListener {
+    /**
+     * Called when an iteration finishes.
+     *
+     * @param depth    the depth just completed
+     * @param score    score in centipawns for the side to move, or a mate score
+     * @param nodes    nodes searched so far
+     * @param millis   time spent so far
+     * @param pv       principal variation; only the first pvLength entries are valid
+     * @param pvLength number of moves in the principal variation
+     */
+    void iterationComplete(int depth, int score, long nodes, long millis, int[] pv, int pvLength);
+}
@@ -0,0 +1,77 @@
+/**
+ * SearchOptions switches the search's selective features on and off, so
+ * each can be measured against the others (see {@link Search#main}). All
+ * are on by default:
+ *
+ * - null-move pruning: give the opponent a free move; if a reduced search
+ *   still fails high, the position is good enough to cut,
+ * - late move reductions: search quiet moves ordered late at reduced depth,
+ *   re-searching only those that beat alpha,
+ * - futility pruning: near the leaves, cut nodes whose static evaluation is
+ *   far above beta (reverse futility) and skip quiet moves when it is far
+ *   below alpha,
+ * - aspiration windows: search each iteration with a narrow window around
+ *   the previous score, widening it on a fail.
+ */
+public class SearchOptions {
+    private boolean nullMove = true;
+    private boolean lateMoveReductions = true;
+    private boolean futilityPruning = true;
+    private boolean aspirationWindows = true;
+
+    public SearchOptions() {
+    }
+
+    public SearchOptions(boolean nullMove, boolean lateMoveReductions, boolean futilityPruning,
+            boolean aspirationWindows) {
+        this.nullMove = nullMove;
+        this.lateMoveReductions = lateMoveReductions;
+        this.futilityPruning = futilityPruning;
+        this.aspirationWindows = aspirationWindows;
+    }
+
+    /**
+     * Returns options with every feature switched off: a plain PVS search.
+     */
+    public static SearchOptions none() {
+        return new SearchOptions(false, false, false, false);
+    }
+
+    public boolean isNullMove() {
+        return nullMove;
+    }
+
+    public void setNullMove(boolean nullMove) {
+        this.nullMove = nullMove;
+    }
+
+    public boolean isLateMoveReductions() {
+        return lateMoveReductions;
+    }
+
+    public void setLateMoveReductions(boolean lateMoveReductions) {
+        this.lateMoveReductions = lateMoveReductions;
+    }
+
+    public boolean isFutilityPruning() {
+        return futilityPruning;
+    }
+
+    public void setFutilityPruning(boolean futilityPruning) {
+        this.futilityPruning = futilityPruning;
+    }
+
+    public boolean isAspirationWindows() {
+        return aspirationWindows;
+    }
+
+    public void setAspirationWindows(boolean aspirationWindows) {
+        this.aspirationWindows = aspirationWindows;
+    }
+
+    @Override
+    public String toString() {
+        return "nullMove=" + nullMove + " lmr=" + lateMoveReductions + " futility=" + futilityPruning
+                + " aspiration=" + aspirationWindows;
+    }
+}
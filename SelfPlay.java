@@ -0,0 +1,343 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SelfPlay plays a match between two {@link AI} difficulties to measure the
+ * strength difference between them. Several games run at once, by default
+ * one per core, each worker thread with its own pair of engines. Games are
+ * played on a clock (base time plus increment) from an opening suite; every
+ * opening is played twice with the colors reversed so neither engine profits
+ * from a lopsided opening.
+ *
+ * Games end by the rules (mate, stalemate, fifty moves, threefold
+ * repetition), on time, or by adjudication:
+ *
+ * - tablebase: the position is covered by the endgame tables, or is a bare
+ *   minor piece ending,
+ * - material: one side has been ahead by the material threshold for
+ *   {@link #MATERIAL_PLIES} plies in a row,
+ * - move count: the game has reached the move limit, and is drawn.
+ *
+ * Every result is fed to an {@link SPRT} for the first engine; once the test
+ * accepts either hypothesis no new games are started. Games are appended to
+ * a PGN file if one is given.
+ */
+public class SelfPlay {
+    public static final int MATERIAL_PLIES = 8; // Plies the material lead must last
+
+    // Played from the standard position when no suite is given; each line is a series of UCI moves
+    private static final String[] DEFAULT_OPENINGS = {
+            "e2e4 e7e5 g1f3 b8c6 f1b5", // Ruy Lopez
+            "e2e4 e7e5 g1f3 b8c6 f1c4 f8c5", // Italian
+            "e2e4 c7c5 g1f3 d7d6", // Sicilian
+            "e2e4 e7e6 d2d4 d7d5", // French
+            "e2e4 c7c6 d2d4 d7d5", // Caro-Kann
+            "e2e4 d7d5 e4d5 d8d5", // Scandinavian
+            "e2e4 g7g6 d2d4 f8g7", // Modern
+            "e2e4 e7e5 f2f4", // King's Gambit
+            "d2d4 d7d5 c2c4 e7e6", // Queen's Gambit Declined
+            "d2d4 d7d5 c2c4 d5c4", // Queen's Gambit Accepted
+            "d2d4 g8f6 c2c4 g7g6 b1c3 f8g7", // King's Indian
+            "d2d4 g8f6 c2c4 e7e6 b1c3 f8b4", // Nimzo-Indian
+            "d2d4 g8f6 c2c4 c7c5 d4d5", // Benoni
+            "d2d4 f7f5", // Dutch
+            "c2c4 e7e5", // English
+            "g1f3 d7d5 g2g3", // Reti
+    };
+
+    private final String engine1;
+    private final String engine2;
+    private final long baseMillis;
+    private final long incrementMillis;
+    private final String timeControl; // As given, e.g. "10+0.1"
+    private final List<String> openings;
+    private final SPRT sprt;
+    private final Tablebase tablebase; // Covers the bare minor piece endings even without tables
+    private final int materialThreshold; // Centipawns, 0 for no material adjudication
+    private final int maxMoves; // Full moves before a draw is declared, 0 for no limit
+    private final int hashMb;
+    private final Writer pgn; // Null for none
+    private final String date = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy.MM.dd"));
+
+    private final AtomicInteger nextGame = new AtomicInteger();
+    private int played; // Guarded by this
+    private long startTime;
+
+    /**
+     * @param timeControl       base seconds plus increment seconds, e.g. "10+0.1"
+     * @param openings          FENs or series of UCI moves from the standard position
+     * @param tablebase         endgame tables for adjudication, or null
+     * @param materialThreshold material lead in centipawns that decides a game, 0 for none
+     * @param maxMoves          full moves before the game is drawn, 0 for no limit
+     * @param pgn               where finished games are written, or null
+     */
+    public SelfPlay(String engine1, String engine2, String timeControl, List<String> openings, SPRT sprt,
+            Tablebase tablebase, int materialThreshold, int maxMoves, int hashMb, Writer pgn) {
+        String[] parts = timeControl.split("\\+");
+        try {
+            this.baseMillis = (long) (Double.parseDouble(parts[0]) * 1000);
+            this.incrementMillis = parts.length > 1 ? (long) (Double.parseDouble(parts[1]) * 1000) : 0;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Time control must be like 10+0.1: " + timeControl);
+        }
+        if (baseMillis <= 0 || openings.isEmpty())
+            throw new IllegalArgumentException("Need a positive base time and at least one opening");
+        this.engine1 = engine1;
+        this.engine2 = engine2;
+        this.timeControl = timeControl;
+        this.openings = openings;
+        this.sprt = sprt;
+        this.tablebase = tablebase != null ? tablebase : new Tablebase();
+        this.materialThreshold = materialThreshold;
+        this.maxMoves = maxMoves;
+        this.hashMb = hashMb;
+        this.pgn = pgn;
+    }
+
+    /**
+     * Plays up to the given number of games on the given number of threads,
+     * stopping early once the SPRT has decided. Games already under way when
+     * it decides are finished and counted.
+     */
+    public void run(int games, int concurrency) throws InterruptedException {
+        startTime = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++)
+            workers.add(pool.submit(() -> playGames(games)));
+        try {
+            for (Future<?> worker : workers)
+                worker.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Game failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    public SPRT getSPRT() {
+        return sprt;
+    }
+
+    /**
+     * Returns the games finished per hour so far.
+     */
+    public synchronized double getGamesPerHour() {
+        double hours = (System.nanoTime() - startTime) / 3.6e12;
+        return hours > 0 ? played / hours : 0;
+    }
+
+    // ------------------ Games ------------------
+
+    // One worker: plays games until the match is over
+    private void playGames(int games) {
+        AI first = newEngine(engine1);
+        AI second = newEngine(engine2);
+        int game;
+        while (!isDecided() && (game = nextGame.getAndIncrement()) < games) {
+            first.newGame();
+            second.newGame();
+            // Each opening twice, with engine1 White in even games
+            String opening = openings.get((game / 2) % openings.size());
+            boolean firstIsWhite = (game & 1) == 0;
+            SelfPlayGame record = firstIsWhite ? play(game + 1, opening, first, second)
+                    : play(game + 1, opening, second, first);
+            record(record, firstIsWhite ? record.getWhiteScore() : 1 - record.getWhiteScore());
+        }
+    }
+
+    private AI newEngine(String difficulty) {
+        AI ai = new AI(difficulty);
+        ai.setHashSize(hashMb);
+        ai.setListener((depth, score, nodes, millis, pv, pvLength) -> { }); // Quiet
+        return ai;
+    }
+
+    /**
+     * Plays one game from an opening, which is a FEN or a series of UCI
+     * moves from the standard position.
+     */
+    public SelfPlayGame play(int round, String opening, AI white, AI black) {
+        boolean isFen = opening.contains("/");
+        Position pos = isFen ? Position.fromFEN(opening) : Position.startPosition();
+        SelfPlayGame game = new SelfPlayGame(round, white.getDifficulty(), black.getDifficulty(),
+                isFen ? opening : null);
+        if (!isFen) {
+            for (String text : opening.trim().split("\\s+")) {
+                int move = UCI.parseMove(pos, text);
+                game.addMove(move);
+                pos.makeMove(move);
+            }
+        }
+
+        long[] clock = {baseMillis, baseMillis};
+        int leadPlies = 0; // Plies the current material leader has kept its lead
+        int leader = 0; // +1 White ahead, -1 Black ahead, 0 neither
+        while (true) {
+            String outcome = MoveGenerator.outcome(pos);
+            if (outcome != null) {
+                int space = outcome.indexOf(' ');
+                game.finish(outcome.substring(0, space), "normal", outcome.substring(space + 1));
+                return game;
+            }
+            if (adjudicate(pos, game, leader, leadPlies))
+                return game;
+
+            int color = pos.getSideToMove();
+            long start = System.nanoTime();
+            int move = (color == Position.WHITE ? white : black).chooseMove(pos, clock[color], incrementMillis);
+            clock[color] -= (System.nanoTime() - start) / 1_000_000;
+            if (clock[color] < 0) {
+                game.finish(color == Position.WHITE ? "0-1" : "1-0", "time forfeit", "time forfeit");
+                return game;
+            }
+            clock[color] += incrementMillis;
+            game.addMove(move);
+            pos.makeMove(move);
+
+            int balance = materialThreshold > 0 ? Integer.signum(materialBalance(pos) / materialThreshold) : 0;
+            leadPlies = balance != 0 && balance == leader ? leadPlies + 1 : 1;
+            leader = balance;
+        }
+    }
+
+    // Ends the game early if the tables, the material count or the move limit decide it
+    private boolean adjudicate(Position pos, SelfPlayGame game, int leader, int leadPlies) {
+        int code = tablebase.probe(pos);
+        if (code != Tablebase.UNKNOWN) {
+            boolean whiteToMove = pos.isWhiteToMove();
+            String result = code == 0 ? "1/2-1/2" : Tablebase.isWin(code) == whiteToMove ? "1-0" : "0-1";
+            game.finish(result, "adjudication", "tablebase");
+            return true;
+        }
+        if (leader != 0 && leadPlies >= MATERIAL_PLIES) {
+            game.finish(leader > 0 ? "1-0" : "0-1", "adjudication", "material");
+            return true;
+        }
+        if (maxMoves > 0 && game.getMoveCount() >= 2 * maxMoves) {
+            game.finish("1/2-1/2", "adjudication", "move limit");
+            return true;
+        }
+        return false;
+    }
+
+    // White's material minus Black's, in centipawns
+    private static int materialBalance(Position pos) {
+        int balance = 0;
+        for (int type = Position.PAWN; type < Position.KING; type++) {
+            int count = Long.bitCount(pos.getPieces(Position.WHITE, type))
+                    - Long.bitCount(pos.getPieces(Position.BLACK, type));
+            balance += count * Evaluation.PIECE_VALUES[type];
+        }
+        return balance;
+    }
+
+    // ------------------ Results ------------------
+
+    private synchronized boolean isDecided() {
+        return sprt.getDecision() != SPRT.CONTINUE;
+    }
+
+    private synchronized void record(SelfPlayGame game, double firstScore) {
+        played++;
+        sprt.addResult(firstScore);
+        if (pgn != null) {
+            try {
+                pgn.write(game.toPGN(engine1 + " vs " + engine2, date, timeControl));
+                pgn.flush();
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot write PGN", e);
+            }
+        }
+        System.out.printf("Game %d: %s - %s %s (%s)  %s  %.0f games/hour%n", game.getRound(), game.getWhite(),
+                game.getBlack(), game.getResult(), game.getReason(), sprt, getGamesPerHour());
+    }
+
+    /**
+     * Reads an opening suite: one FEN or series of UCI moves per line. Blank
+     * lines and lines starting with '#' are skipped.
+     */
+    public static List<String> readOpenings(Path path) throws IOException {
+        List<String> openings = new ArrayList<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#"))
+                openings.add(line);
+        }
+        return openings;
+    }
+
+    /**
+     * Plays a match and prints the SPRT verdict and the throughput. Options:
+     * "--engine1 D" and "--engine2 D" (difficulties, default Hard and
+     * Medium), "--tc S+I" (default 10+0.1), "--games N" (default 1000),
+     * "--concurrency N" (default: the number of cores), "--openings FILE",
+     * "--pgn FILE", "--elo0 E" and "--elo1 E" (default 0 and 10),
+     * "--alpha A" and "--beta B" (default 0.05), "--tablebases DIR",
+     * "--material CP" (default 1000, 0 to disable), "--max-moves N"
+     * (default 200), "--hash MB" per engine (default 16) and "--nnue FILE".
+     */
+    public static void main(String[] args) throws Exception {
+        Bitboards.init();
+        String engine1 = "Hard";
+        String engine2 = "Medium";
+        String timeControl = "10+0.1";
+        int games = 1000;
+        int concurrency = Runtime.getRuntime().availableProcessors();
+        List<String> openings = List.of(DEFAULT_OPENINGS);
+        Path pgnPath = null;
+        double elo0 = 0, elo1 = 10, alpha = 0.05, beta = 0.05;
+        Tablebase tablebase = null;
+        int material = 1000;
+        int maxMoves = 200;
+        int hashMb = Search.DEFAULT_HASH_MB;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--engine1" -> engine1 = value;
+                case "--engine2" -> engine2 = value;
+                case "--tc" -> timeControl = value;
+                case "--games" -> games = Integer.parseInt(value);
+                case "--concurrency" -> concurrency = Integer.parseInt(value);
+                case "--openings" -> openings = readOpenings(Path.of(value));
+                case "--pgn" -> pgnPath = Path.of(value);
+                case "--elo0" -> elo0 = Double.parseDouble(value);
+                case "--elo1" -> elo1 = Double.parseDouble(value);
+                case "--alpha" -> alpha = Double.parseDouble(value);
+                case "--beta" -> beta = Double.parseDouble(value);
+                case "--tablebases" -> tablebase = Tablebase.open(Path.of(value));
+                case "--material" -> material = Integer.parseInt(value);
+                case "--max-moves" -> maxMoves = Integer.parseInt(value);
+                case "--hash" -> hashMb = Integer.parseInt(value);
+                case "--nnue" -> AI.setNetwork(NnueNetwork.load(Path.of(value)));
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        SPRT sprt = new SPRT(elo0, elo1, alpha, beta);
+        try (Writer pgn = pgnPath != null ? Files.newBufferedWriter(pgnPath, StandardCharsets.UTF_8) : null) {
+            SelfPlay match = new SelfPlay(engine1, engine2, timeControl, openings, sprt, tablebase, material,
+                    maxMoves, hashMb, pgn);
+            match.run(games, concurrency);
+            String verdict = switch (sprt.getDecision()) {
+                case SPRT.ACCEPT_H1 -> "H1 accepted: " + engine1 + " is stronger by at least " + elo1 + " Elo";
+                case SPRT.ACCEPT_H0 -> "H0 accepted: " + engine1 + " is not stronger by " + elo1 + " Elo";
+                default -> "No decision";
+            };
+            System.out.printf("%s after %d games: %s%n%.0f games/hour on %d threads%n", verdict, sprt.getGames(),
+                    sprt, match.getGamesPerHour(), concurrency);
+        }
+    }
+}
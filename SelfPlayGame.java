@@ -0,0 +1,136 @@
+import java.util.Arrays;
+
+/**
+ * SelfPlayGame records one game played by {@link SelfPlay}: the players, the
+ * start position, the moves and how it ended, and formats it as PGN.
+ */
+public class SelfPlayGame {
+    private static final int LINE_WIDTH = 79; // PGN move text is wrapped below 80 columns
+
+    private final int round;
+    private final String white;
+    private final String black;
+    private final String fen; // Start position, null for the standard one
+    private int[] moves = new int[128];
+    private int moveCount;
+    private String result = "*";
+    private String termination; // PGN Termination tag: "normal", "adjudication" or "time forfeit"
+    private String reason; // e.g. "checkmate" or "material"
+
+    public SelfPlayGame(int round, String white, String black, String fen) {
+        this.round = round;
+        this.white = white;
+        this.black = black;
+        this.fen = fen;
+    }
+
+    public void addMove(int move) {
+        if (moveCount == moves.length)
+            moves = Arrays.copyOf(moves, moves.length * 2);
+        moves[moveCount++] = move;
+    }
+
+    /**
+     * Ends the game.
+     *
+     * @param result      "1-0", "0-1" or "1/2-1/2"
+     * @param termination the PGN Termination tag
+     * @param reason      what decided it, e.g. "checkmate" or "material"
+     */
+    public void finish(String result, String termination, String reason) {
+        this.result = result;
+        this.termination = termination;
+        this.reason = reason;
+    }
+
+    public int getRound() {
+        return round;
+    }
+
+    public String getWhite() {
+        return white;
+    }
+
+    public String getBlack() {
+        return black;
+    }
+
+    public String getResult() {
+        return result;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Returns the score for White: 1, 0.5 or 0.
+     */
+    public double getWhiteScore() {
+        return result.equals("1-0") ? 1 : result.equals("0-1") ? 0 : 0.5;
+    }
+
+    /**
+     * Formats the game as PGN, with the moves in SAN and the reason for the
+     * result as a final comment.
+     */
+    public String toPGN(String event, String date, String timeControl) {
+        StringBuilder pgn = new StringBuilder();
+        appendTag(pgn, "Event", event);
+        appendTag(pgn, "Site", "?");
+        appendTag(pgn, "Date", date);
+        appendTag(pgn, "Round", Integer.toString(round));
+        appendTag(pgn, "White", white);
+        appendTag(pgn, "Black", black);
+        appendTag(pgn, "Result", result);
+        if (fen != null) {
+            appendTag(pgn, "SetUp", "1");
+            appendTag(pgn, "FEN", fen);
+        }
+        appendTag(pgn, "TimeControl", timeControl);
+        appendTag(pgn, "PlyCount", Integer.toString(moveCount));
+        if (termination != null)
+            appendTag(pgn, "Termination", termination);
+        pgn.append('\n');
+
+        Position pos = fen == null ? Position.startPosition() : Position.fromFEN(fen);
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < moveCount; i++) {
+            String token = Moves.toSAN(pos, moves[i]);
+            if (pos.isWhiteToMove())
+                token = pos.getFullMoveNumber() + ". " + token;
+            else if (i == 0)
+                token = pos.getFullMoveNumber() + "... " + token;
+            appendWrapped(pgn, line, token);
+            pos.makeMove(moves[i]);
+        }
+        if (reason != null)
+            appendWrapped(pgn, line, "{" + reason + "}");
+        appendWrapped(pgn, line, result);
+        pgn.append(line).append("\n\n");
+        return pgn.toString();
+    }
+
+    // ------------------ Helpers ------------------
+
+    private static void appendTag(StringBuilder pgn, String name, String value) {
+        pgn.append('[').append(name).append(" \"")
+                .append(value.replace("\\", "\\\\").replace("\"", "\\\""))
+                .append("\"]\n");
+    }
+
+    // Adds a token to the current line, first moving the line to the PGN if the token does not fit
+    private static void appendWrapped(StringBuilder pgn, StringBuilder line, String token) {
+        if (line.length() > 0 && line.length() + 1 + token.length() > LINE_WIDTH) {
+            pgn.append(line).append('\n');
+            line.setLength(0);
+        }
+        if (line.length() > 0)
+            line.append(' ');
+        line.append(token);
+    }
+}
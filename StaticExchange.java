@@ -0,0 +1,221 @@
+/**
+ * StaticExchange works out the material result of a capture by playing out
+ * the whole exchange on the destination square: both sides keep recapturing
+ * with their least valuable attacker, and either side may stop when going on
+ * would lose material. Sliders lined up behind a capturing piece (x-rays)
+ * join in as the pieces in front of them leave the square's lines.
+ *
+ * Pins and checks are ignored, as is usual for static exchange evaluation.
+ * The search calls {@link #isAtLeast} at almost every quiescence node, so it
+ * works on bitboards and never allocates; {@link #evaluate} keeps its swap
+ * list in a per-thread buffer.
+ *
+ * Usage:
+ *   java StaticExchange [iterations]   benchmark on captures from reference positions
+ */
+public final class StaticExchange {
+    // Exchange values per piece type, shared with move ordering
+    private static final int[] VALUES = Evaluation.PIECE_VALUES;
+
+    // Swap list of evaluate: one entry per capture, and a square has at most 32 pieces on its lines
+    private static final ThreadLocal<int[]> GAIN = ThreadLocal.withInitial(() -> new int[32]);
+
+    private static final String[] BENCH_POSITIONS = {
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "1k1r3q/1ppn3p/p4b2/4p3/8/P2N2P1/1PP1R1BP/2K1Q3 w - - 0 1",
+    };
+
+    private StaticExchange() {
+    }
+
+    /**
+     * Returns the material the side to move gains with the move, in
+     * centipawns, assuming both sides recapture as long as it pays. Quiet
+     * moves score what the opponent can win by taking the moved piece, so a
+     * move to a safe square scores 0.
+     */
+    public static int evaluate(Position pos, int move) {
+        if (Moves.isCastling(move))
+            return 0;
+
+        int to = Moves.to(move);
+        int[] gain = GAIN.get();
+        int moved = typeAfterMove(move);
+        gain[0] = capturedValue(move);
+
+        long occupied = occupancyAfterMove(pos, move);
+        long attackers = pos.attackersTo(to, occupied) & occupied;
+        int side = pos.getSideToMove() ^ 1;
+        int depth = 0;
+
+        while (true) {
+            long ours = attackers & pos.getOccupancy(side);
+            if (ours == 0)
+                break;
+            int type = leastValuableType(pos, side, ours);
+            depth++;
+            gain[depth] = VALUES[moved] - gain[depth - 1]; // Capture the last mover
+            moved = type;
+            occupied ^= Long.lowestOneBit(ours & pos.getPieces(side, type));
+            attackers = (attackers | xRays(pos, type, to, occupied)) & occupied;
+            side ^= 1;
+        }
+
+        // Each side stops capturing if that is better than going on
+        for (; depth > 0; depth--)
+            gain[depth - 1] = -Math.max(-gain[depth - 1], gain[depth]);
+        return gain[0];
+    }
+
+    /**
+     * Returns true if the move wins at least the threshold in the exchange,
+     * i.e. {@code evaluate(pos, move) >= threshold}, usually with much less
+     * work since it stops as soon as the answer is known.
+     */
+    public static boolean isAtLeast(Position pos, int move, int threshold) {
+        if (Moves.isCastling(move))
+            return threshold <= 0;
+
+        // If the opponent does not recapture, we are up by the captured value
+        int swap = capturedValue(move) - threshold;
+        if (swap < 0)
+            return false;
+        // If the opponent recaptures and we stop, we lose the moved piece
+        swap = VALUES[typeAfterMove(move)] - swap;
+        if (swap <= 0)
+            return true;
+
+        int to = Moves.to(move);
+        long occupied = occupancyAfterMove(pos, move);
+        long attackers = pos.attackersTo(to, occupied);
+        int side = pos.getSideToMove();
+        int result = 1; // 1 while the moving side is ahead
+
+        while (true) {
+            side ^= 1;
+            attackers &= occupied;
+            long ours = attackers & pos.getOccupancy(side);
+            if (ours == 0)
+                break;
+            result ^= 1;
+
+            int type = leastValuableType(pos, side, ours);
+            if (type == Position.KING) // Only legal if the square is no longer defended
+                return ((attackers & pos.getOccupancy(side ^ 1)) != 0 ? result ^ 1 : result) != 0;
+
+            // swap is what the side now capturing is behind; it stops if it cannot catch up
+            swap = VALUES[type] - swap;
+            if (swap < result)
+                break;
+
+            occupied ^= Long.lowestOneBit(ours & pos.getPieces(side, type));
+            attackers |= xRays(pos, type, to, occupied);
+        }
+        return result != 0;
+    }
+
+    // ------------------ Helpers ------------------
+
+    private static int capturedValue(int move) {
+        int value = Moves.isCapture(move) ? VALUES[Position.typeOf(Moves.captured(move))] : 0;
+        if (Moves.isPromotion(move))
+            value += VALUES[Position.typeOf(Moves.promotion(move))] - VALUES[Position.PAWN];
+        return value;
+    }
+
+    // The piece standing on the destination square after the move
+    private static int typeAfterMove(int move) {
+        return Position.typeOf(Moves.isPromotion(move) ? Moves.promotion(move) : Moves.piece(move));
+    }
+
+    private static long occupancyAfterMove(Position pos, int move) {
+        long occupied = (pos.getOccupied() ^ (1L << Moves.from(move))) | (1L << Moves.to(move));
+        if (Moves.isEnPassant(move))
+            occupied ^= 1L << (Moves.to(move) + (pos.getSideToMove() == Position.WHITE ? -8 : 8));
+        return occupied;
+    }
+
+    private static int leastValuableType(Position pos, int side, long attackers) {
+        for (int type = Position.PAWN; type < Position.KING; type++) {
+            if ((attackers & pos.getPieces(side, type)) != 0)
+                return type;
+        }
+        return Position.KING;
+    }
+
+    // Sliders behind a piece that just left the square's lines now see the
+    // square. A knight never stands on those lines and a king never has
+    // anything behind it that matters.
+    private static long xRays(Position pos, int type, int to, long occupied) {
+        long queens = pos.getPieces(Position.WHITE, Position.QUEEN) | pos.getPieces(Position.BLACK, Position.QUEEN);
+        long xRays = 0L;
+        if (type == Position.PAWN || type == Position.BISHOP || type == Position.QUEEN)
+            xRays |= Bitboards.bishopAttacks(to, occupied) & (queens
+                    | pos.getPieces(Position.WHITE, Position.BISHOP) | pos.getPieces(Position.BLACK, Position.BISHOP));
+        if (type == Position.ROOK || type == Position.QUEEN)
+            xRays |= Bitboards.rookAttacks(to, occupied) & (queens
+                    | pos.getPieces(Position.WHITE, Position.ROOK) | pos.getPieces(Position.BLACK, Position.ROOK));
+        return xRays;
+    }
+
+    // ------------------ Benchmark ------------------
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        Bitboards.init();
+
+        // Every capture in the tree two plies below each position
+        int[] captures = new int[1 << 16];
+        Position[] positions = new Position[captures.length];
+        int count = 0;
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int[] replies = new int[MoveGenerator.MAX_MOVES];
+        for (String fen : BENCH_POSITIONS) {
+            Position root = Position.fromFEN(fen);
+            int n = MoveGenerator.generateLegal(root, moves);
+            for (int i = 0; i < n && count < captures.length - MoveGenerator.MAX_MOVES; i++) {
+                Position child = new Position(root);
+                child.makeMove(moves[i]);
+                int m = MoveGenerator.generateLegalNoisy(child, replies, 0);
+                for (int j = 0; j < m; j++) {
+                    captures[count] = replies[j];
+                    positions[count++] = child;
+                }
+            }
+        }
+
+        // The two routines must agree
+        int mismatches = 0;
+        for (int i = 0; i < count; i++) {
+            int value = evaluate(positions[i], captures[i]);
+            for (int threshold = -1000; threshold <= 1000; threshold += 50) {
+                if (isAtLeast(positions[i], captures[i], threshold) != (value >= threshold))
+                    mismatches++;
+            }
+        }
+
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int k = 0; k < iterations; k++) {
+            for (int i = 0; i < count; i++)
+                sink += evaluate(positions[i], captures[i]);
+        }
+        long evaluateTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int k = 0; k < iterations; k++) {
+            for (int i = 0; i < count; i++)
+                sink += isAtLeast(positions[i], captures[i], 0) ? 1 : 0;
+        }
+        long thresholdTime = System.nanoTime() - start;
+
+        long calls = (long) count * iterations;
+        System.out.println("Captures: " + count + ", mismatches: " + mismatches);
+        System.out.printf("evaluate:  %.1f ns/call%n", (double) evaluateTime / calls);
+        System.out.printf("isAtLeast: %.1f ns/call%n", (double) thresholdTime / calls);
+        System.out.println("(checksum " + sink + ")");
+    }
+}
@@ -0,0 +1,252 @@
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tablebase answers endgame positions perfectly from the tables that have
+ * been generated (see {@link TablebaseGenerator}) or opened. A probe returns
+ * the position's code (see {@link TablebaseTable}): 0 for a draw, otherwise
+ * the distance to mate in plies plus one, odd when the side to move is
+ * mated and even when it mates. Positions the tables do not cover return
+ * {@link #UNKNOWN}. That includes positions with castling rights, or where
+ * an en passant capture is possible, which the tables ignore. An en passant
+ * square that no pawn can capture onto, as after most double pushes, makes
+ * no difference.
+ *
+ * Tables are registered once and then only read, so probing is thread safe.
+ * Probes work in per-thread buffers and do not allocate.
+ */
+public class Tablebase {
+    public static final int UNKNOWN = -1;
+    public static final String EXTENSION = ".tb";
+
+    // Each table under its material key and, colors swapped, under the key of the mirrored
+    // material. Scanned rather than hashed so probes do not box the key; there are few tables
+    private int[] keys = new int[0];
+    private TablebaseTable[] tables = new TablebaseTable[0];
+    private boolean[] flips = new boolean[0];
+    private final Map<String, TablebaseTable> byName = new HashMap<>();
+    private int maxPieces = 3; // Trivial draws are known without tables
+
+    // Pieces, squares and table slots of the position being probed
+    private static final ThreadLocal<int[][]> BUFFERS = ThreadLocal.withInitial(
+            () -> new int[3][TablebaseMaterial.MAX_PIECES]);
+
+    // Material keys of the draws no table is needed for: bare kings, or one minor piece with them
+    private static final int[] TRIVIAL_DRAW_KEYS = {
+            materialKey(new int[] {Position.WHITE_KING, Position.BLACK_KING}, 2, false),
+            materialKey(new int[] {Position.WHITE_KING, Position.BLACK_KING, Position.WHITE_BISHOP}, 3, false),
+            materialKey(new int[] {Position.WHITE_KING, Position.BLACK_KING, Position.WHITE_KNIGHT}, 3, false),
+            materialKey(new int[] {Position.WHITE_KING, Position.BLACK_KING, Position.BLACK_BISHOP}, 3, false),
+            materialKey(new int[] {Position.WHITE_KING, Position.BLACK_KING, Position.BLACK_KNIGHT}, 3, false),
+    };
+
+    /**
+     * Opens every table file in a directory.
+     *
+     * @throws IOException if the directory or a file cannot be read
+     */
+    public static Tablebase open(Path directory) throws IOException {
+        Tablebase tablebase = new Tablebase();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files)
+                tablebase.add(TablebaseTable.open(file));
+        }
+        return tablebase;
+    }
+
+    /**
+     * Makes a table available for probing. Not safe while other threads probe.
+     */
+    public void add(TablebaseTable table) {
+        TablebaseMaterial material = table.getMaterial();
+        int[] pieces = new int[material.getPieceCount()];
+        for (int i = 0; i < pieces.length; i++)
+            pieces[i] = material.getPiece(i);
+        // The direct entry comes first, so a table for symmetric material is probed as is
+        addEntry(materialKey(pieces, pieces.length, false), table, false);
+        addEntry(materialKey(pieces, pieces.length, true), table, true);
+        byName.put(material.getName(), table);
+        maxPieces = Math.max(maxPieces, pieces.length);
+    }
+
+    private void addEntry(int key, TablebaseTable table, boolean flip) {
+        int n = keys.length;
+        keys = Arrays.copyOf(keys, n + 1);
+        tables = Arrays.copyOf(tables, n + 1);
+        flips = Arrays.copyOf(flips, n + 1);
+        keys[n] = key;
+        tables[n] = table;
+        flips[n] = flip;
+    }
+
+    /**
+     * Returns the table for a canonical name such as "KQKR", or null.
+     */
+    public TablebaseTable getTable(String name) {
+        return byName.get(name);
+    }
+
+    public int getTableCount() {
+        return byName.size();
+    }
+
+    /**
+     * Returns the most pieces of any position the tables can answer.
+     */
+    public int getMaxPieces() {
+        return maxPieces;
+    }
+
+    // ------------------ Probing ------------------
+
+    /**
+     * Returns the code of a position, or {@link #UNKNOWN}.
+     */
+    public int probe(Position pos) {
+        long occupied = pos.getOccupied();
+        int count = Long.bitCount(occupied);
+        if (count > maxPieces || pos.getCastlingRights() != 0 || canCaptureEnPassant(pos))
+            return UNKNOWN;
+        int[][] buffers = BUFFERS.get();
+        int[] pieces = buffers[0];
+        int[] squares = buffers[1];
+        for (int i = 0; occupied != 0; i++) {
+            squares[i] = Long.numberOfTrailingZeros(occupied);
+            pieces[i] = pos.getPieceAt(squares[i]);
+            occupied &= occupied - 1;
+        }
+        return probe(pieces, squares, count, pos.getSideToMove());
+    }
+
+    /**
+     * Returns the code of the position with the given pieces on the given
+     * squares, or {@link #UNKNOWN}. The pieces may be in any order.
+     */
+    public int probe(int[] pieces, int[] squares, int count, int sideToMove) {
+        if (count > maxPieces)
+            return UNKNOWN;
+        int key = materialKey(pieces, count, false);
+        int entry = 0;
+        while (entry < keys.length && keys[entry] != key)
+            entry++;
+        if (entry == keys.length)
+            return isTrivialDraw(key) ? 0 : UNKNOWN;
+        TablebaseTable table = tables[entry];
+        boolean flip = flips[entry];
+
+        // Give each slot of the table a piece of its kind
+        TablebaseMaterial material = table.getMaterial();
+        int[] slots = BUFFERS.get()[2];
+        int used = 0;
+        for (int slot = 0; slot < count; slot++) {
+            int wanted = flip ? flipColor(material.getPiece(slot)) : material.getPiece(slot);
+            for (int i = 0; i < count; i++) {
+                if ((used & (1 << i)) == 0 && pieces[i] == wanted) {
+                    used |= 1 << i;
+                    slots[slot] = flip ? squares[i] ^ 56 : squares[i];
+                    break;
+                }
+            }
+        }
+        return table.get(material.index(flip ? sideToMove ^ 1 : sideToMove, slots));
+    }
+
+    /**
+     * Returns the move that wins fastest, holds the draw, or loses slowest,
+     * or Moves.NONE if the position or one of its successors is not covered.
+     */
+    public int bestMove(Position pos) {
+        if (probe(pos) == UNKNOWN)
+            return Moves.NONE;
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegal(pos, moves);
+        int bestMove = Moves.NONE;
+        int bestRank = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            pos.makeMove(moves[i]);
+            int code = probe(pos);
+            pos.unmakeMove();
+            if (code == UNKNOWN)
+                return Moves.NONE;
+            // The child's code is from the opponent's side
+            int rank = code == 0 ? 0 : isLoss(code) ? 1000 - code : -1000 + code;
+            if (rank > bestRank) {
+                bestRank = rank;
+                bestMove = moves[i];
+            }
+        }
+        return bestMove;
+    }
+
+    // ------------------ Codes ------------------
+
+    /**
+     * Whether the side to move mates.
+     */
+    public static boolean isWin(int code) {
+        return code > 0 && (code & 1) == 0;
+    }
+
+    /**
+     * Whether the side to move is mated.
+     */
+    public static boolean isLoss(int code) {
+        return (code & 1) == 1;
+    }
+
+    /**
+     * Returns the plies to mate of a decided code.
+     */
+    public static int plies(int code) {
+        return code - 1;
+    }
+
+    /**
+     * Converts a code to a search score at the given ply from the root. Mates
+     * too far away to express as mate scores become large plain scores.
+     */
+    public static int score(int code, int ply) {
+        if (code <= 0)
+            return 0;
+        int mateIn = ply + plies(code);
+        int score = mateIn < Search.MAX_PLY ? Search.MATE - mateIn : Search.MATE_BOUND - 1;
+        return isWin(code) ? score : -score;
+    }
+
+    // ------------------ Helpers ------------------
+
+    // Whether a pawn of the side to move attacks the en passant square. Pins are
+    // not checked, so a position is at worst left to the search needlessly
+    private static boolean canCaptureEnPassant(Position pos) {
+        int square = pos.getEnPassantTargetSquare();
+        if (square == Position.NO_SQUARE)
+            return false;
+        int us = pos.getSideToMove();
+        return (Bitboards.pawnAttacks(us ^ 1, square) & pos.getPieces(us, Position.PAWN)) != 0;
+    }
+
+    // Two bits of count per piece code
+    private static int materialKey(int[] pieces, int count, boolean flip) {
+        int key = 0;
+        for (int i = 0; i < count; i++)
+            key += 1 << (2 * (flip ? flipColor(pieces[i]) : pieces[i]));
+        return key;
+    }
+
+    private static boolean isTrivialDraw(int key) {
+        for (int drawKey : TRIVIAL_DRAW_KEYS) {
+            if (key == drawKey)
+                return true;
+        }
+        return false;
+    }
+
+    private static int flipColor(int piece) {
+        return piece < 6 ? piece + 6 : piece - 6;
+    }
+}
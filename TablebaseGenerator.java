@@ -0,0 +1,536 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * TablebaseGenerator solves small endgames by retrograde analysis, working
+ * backwards from the mates:
+ *
+ * 1. Every position is looked at once. Checkmates are losses in 0 plies.
+ *    Captures and promotions lead into smaller tables, which are generated
+ *    first, so their results are known here. Each position remembers how
+ *    many of its moves stay in the table and are not yet known to lose.
+ * 2. Then, ply by ply, the positions decided at ply p are walked backwards
+ *    with un-moves. A predecessor of a loss is a win at p + 1. A
+ *    predecessor of a win has one fewer unrefuted move. When none are left
+ *    it is lost, as late as its best defence allows.
+ * 3. Positions never decided are draws.
+ *
+ * Both phases are split over a pool of threads. Results are only written
+ * between plies, and the counters are updated atomically, so the threads
+ * need no locks. En passant and castling are ignored.
+ */
+public class TablebaseGenerator {
+    private static final int MAX_PLIES = 254; // Codes are plies + 1 and must fit a byte
+    private static final int CHUNKS_PER_THREAD = 16;
+    private static final VarHandle BYTES = MethodHandles.arrayElementVarHandle(byte[].class);
+    private static final int[] PROMOTIONS = {Position.QUEEN, Position.ROOK, Position.BISHOP, Position.KNIGHT};
+
+    private final Tablebase tablebase;
+    private final int threads;
+    private final Path directory; // Where tables are read from and written to, or null
+
+    // State of the table being solved
+    private TablebaseMaterial material;
+    private int pieceCount;
+    private final int[] kingSlot = new int[2];
+    private byte[] codes; // Result, 0 until decided
+    private byte[] remaining; // Moves not yet known to lose
+    private byte[] exitPlies; // Longest loss through a capture or promotion, in plies
+    private int[][] buckets; // Positions to decide at each ply
+    private int[] bucketSizes;
+
+    public TablebaseGenerator(Tablebase tablebase, int threads, Path directory) {
+        if (threads < 1)
+            throw new IllegalArgumentException("Thread count must be at least 1");
+        this.tablebase = tablebase;
+        this.threads = threads;
+        this.directory = directory;
+    }
+
+    /**
+     * Makes a table and every table it leads into available in the
+     * tablebase, opening them from the directory if they exist there and
+     * generating (and saving) them otherwise.
+     *
+     * @param name a canonical material name such as "KQKR"
+     */
+    public TablebaseTable generate(String name) throws IOException, InterruptedException {
+        TablebaseMaterial target = TablebaseMaterial.parse(name);
+        int split = name.indexOf('K', 1);
+        String canonical = TablebaseMaterial.canonicalName(name.substring(0, split), name.substring(split));
+        if (!canonical.equals(name))
+            throw new IllegalArgumentException("Tables are stored with the stronger side first: " + canonical);
+
+        TablebaseTable table = tablebase.getTable(name);
+        if (table != null)
+            return table;
+        Path file = directory != null ? directory.resolve(name + Tablebase.EXTENSION) : null;
+        if (file != null && Files.exists(file)) {
+            table = TablebaseTable.open(file);
+            tablebase.add(table);
+            return table;
+        }
+
+        for (String successor : successors(target)) {
+            if (!TablebaseMaterial.isTrivialDraw(successor))
+                generate(successor);
+        }
+        table = TablebaseTable.pack(target, solve(target));
+        tablebase.add(table);
+        if (file != null)
+            table.write(file);
+        return table;
+    }
+
+    /**
+     * Returns the canonical names of the tables a capture or promotion can
+     * lead to.
+     */
+    static Set<String> successors(TablebaseMaterial material) {
+        Set<String> names = new LinkedHashSet<>();
+        String name = material.getName();
+        int split = name.indexOf('K', 1);
+        String[] sides = {name.substring(0, split), name.substring(split)};
+        for (int color = 0; color < 2; color++) {
+            String own = sides[color];
+            String other = sides[color ^ 1];
+            // Captures by this side, with or without promoting
+            for (int i = 1; i < other.length(); i++) {
+                String captured = other.substring(0, i) + other.substring(i + 1);
+                names.add(orient(color, own, captured));
+                if (own.indexOf('P') >= 0) {
+                    for (String piece : new String[] {"Q", "R", "B", "N"})
+                        names.add(orient(color, promote(own, piece), captured));
+                }
+            }
+            if (own.indexOf('P') >= 0) {
+                for (String piece : new String[] {"Q", "R", "B", "N"})
+                    names.add(orient(color, promote(own, piece), other));
+            }
+        }
+        return names;
+    }
+
+    // ------------------ Solving ------------------
+
+    /**
+     * Solves one table, whose successors must already be in the tablebase,
+     * and returns its codes.
+     */
+    private byte[] solve(TablebaseMaterial material) throws InterruptedException {
+        this.material = material;
+        this.pieceCount = material.getPieceCount();
+        for (int slot = 0; slot < pieceCount; slot++) {
+            int piece = material.getPiece(slot);
+            if (Position.typeOf(piece) == Position.KING)
+                kingSlot[Position.colorOf(piece)] = slot;
+        }
+        int size = (int) material.size();
+        codes = new byte[size];
+        remaining = new byte[size];
+        exitPlies = new byte[size];
+        buckets = new int[MAX_PLIES + 1][];
+        bucketSizes = new int[MAX_PLIES + 1];
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "tablebase-generator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            int chunks = threads * CHUNKS_PER_THREAD;
+            runAll(pool, chunks, chunk -> initialize((int) ((long) size * chunk / chunks),
+                    (int) ((long) size * (chunk + 1) / chunks)));
+
+            for (int ply = 0; ply <= MAX_PLIES; ply++) {
+                int[] frontier = commit(ply);
+                if (frontier.length == 0 && !pendingAfter(ply))
+                    break;
+                int level = ply;
+                runAll(pool, chunks, chunk -> propagate(frontier, level,
+                        (int) ((long) frontier.length * chunk / chunks),
+                        (int) ((long) frontier.length * (chunk + 1) / chunks)));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        byte[] result = codes;
+        codes = null;
+        remaining = null;
+        exitPlies = null;
+        buckets = null;
+        return result;
+    }
+
+    /**
+     * Phase one for the positions in [from, to): finds mates, scores
+     * captures and promotions from the smaller tables, and counts the moves
+     * that stay in the table.
+     */
+    private void initialize(int from, int to) {
+        int[] squares = new int[pieceCount];
+        int[] moved = new int[pieceCount];
+        int[] childPieces = new int[pieceCount];
+        int[] childSquares = new int[pieceCount];
+        int[][] localBuckets = new int[MAX_PLIES + 1][];
+        int[] localSizes = new int[MAX_PLIES + 1];
+
+        for (int index = from; index < to; index++) {
+            int us = material.decode(index, squares);
+            if (!isLegal(squares, us))
+                continue;
+
+            long occupied = occupancy(squares, -1);
+            long own = occupancy(squares, us);
+            int legal = 0;
+            int inTable = 0;
+            int winPlies = Integer.MAX_VALUE;
+            int exit = 0;
+
+            for (int slot = 0; slot < pieceCount; slot++) {
+                int piece = material.getPiece(slot);
+                if (Position.colorOf(piece) != us)
+                    continue;
+                int square = squares[slot];
+                long targets;
+                if (Position.typeOf(piece) == Position.PAWN) {
+                    int forward = us == Position.WHITE ? 8 : -8;
+                    targets = Bitboards.pawnAttacks(us, square) & occupied & ~own;
+                    if ((occupied & (1L << (square + forward))) == 0) {
+                        targets |= 1L << (square + forward);
+                        int startRank = us == Position.WHITE ? 1 : 6;
+                        if (Position.rankOf(square) == startRank && (occupied & (1L << (square + 2 * forward))) == 0)
+                            targets |= 1L << (square + 2 * forward);
+                    }
+                } else {
+                    targets = attacks(piece, square, occupied) & ~own;
+                }
+
+                while (targets != 0) {
+                    int target = Long.numberOfTrailingZeros(targets);
+                    targets &= targets - 1;
+                    System.arraycopy(squares, 0, moved, 0, pieceCount);
+                    int captured = slotAt(squares, target);
+                    if (captured >= 0)
+                        moved[captured] = -1;
+                    moved[slot] = target;
+                    if (isAttacked(moved, moved[kingSlot[us]], us ^ 1))
+                        continue;
+                    boolean promotes = Position.typeOf(piece) == Position.PAWN
+                            && (Position.rankOf(target) == 0 || Position.rankOf(target) == 7);
+
+                    if (captured < 0 && !promotes) {
+                        legal++;
+                        inTable++;
+                        continue;
+                    }
+                    for (int promotion = 0; promotion < (promotes ? PROMOTIONS.length : 1); promotion++) {
+                        legal++;
+                        int count = 0;
+                        for (int i = 0; i < pieceCount; i++) {
+                            if (moved[i] < 0)
+                                continue;
+                            childPieces[count] = i == slot && promotes
+                                    ? Position.makePiece(us, PROMOTIONS[promotion]) : material.getPiece(i);
+                            childSquares[count++] = moved[i];
+                        }
+                        int code = tablebase.probe(childPieces, childSquares, count, us ^ 1);
+                        if (code == Tablebase.UNKNOWN)
+                            throw new IllegalStateException("Missing table below " + material);
+                        if (code == 0) {
+                            inTable++; // A draw: this position can never be lost
+                        } else if (Tablebase.isLoss(code)) {
+                            if (winPlies == Integer.MAX_VALUE)
+                                inTable++; // Nor when it has a winning way out
+                            winPlies = Math.min(winPlies, Tablebase.plies(code) + 1);
+                        } else {
+                            exit = Math.max(exit, Tablebase.plies(code) + 1);
+                        }
+                    }
+                }
+            }
+
+            if (legal == 0) {
+                if (isAttacked(squares, squares[kingSlot[us]], us ^ 1))
+                    append(localBuckets, localSizes, 0, index); // Checkmate
+                continue; // Stalemate stays a draw
+            }
+            remaining[index] = (byte) inTable;
+            exitPlies[index] = (byte) exit;
+            if (winPlies != Integer.MAX_VALUE)
+                append(localBuckets, localSizes, checkPlies(winPlies), index);
+            else if (inTable == 0)
+                append(localBuckets, localSizes, checkPlies(exit), index); // Every move loses
+        }
+        merge(localBuckets, localSizes);
+    }
+
+    /**
+     * Phase two for frontier[from, to), the positions decided at the given
+     * ply: un-makes the last move in every way, updating the predecessors.
+     */
+    private void propagate(int[] frontier, int ply, int from, int to) {
+        int[] squares = new int[pieceCount];
+        int[][] localBuckets = new int[MAX_PLIES + 1][];
+        int[] localSizes = new int[MAX_PLIES + 1];
+        boolean lost = (ply & 1) == 0; // The side to move in the frontier loses
+
+        for (int f = from; f < to; f++) {
+            int mover = material.decode(frontier[f], squares) ^ 1;
+            long occupied = occupancy(squares, -1);
+            for (int slot = 0; slot < pieceCount; slot++) {
+                int piece = material.getPiece(slot);
+                if (Position.colorOf(piece) != mover)
+                    continue;
+                int square = squares[slot];
+                long origins;
+                if (Position.typeOf(piece) == Position.PAWN) {
+                    int back = mover == Position.WHITE ? -8 : 8;
+                    int rank = Position.rankOf(square);
+                    origins = 0;
+                    boolean canRetreat = mover == Position.WHITE ? rank >= 2 : rank <= 5;
+                    if (canRetreat && (occupied & (1L << (square + back))) == 0) {
+                        origins |= 1L << (square + back);
+                        int doubleRank = mover == Position.WHITE ? 3 : 4;
+                        if (rank == doubleRank && (occupied & (1L << (square + 2 * back))) == 0)
+                            origins |= 1L << (square + 2 * back);
+                    }
+                } else {
+                    origins = attacks(piece, square, occupied) & ~occupied;
+                }
+
+                while (origins != 0) {
+                    int origin = Long.numberOfTrailingZeros(origins);
+                    origins &= origins - 1;
+                    squares[slot] = origin;
+                    // The side that did not move must not have been left in check
+                    if (!isAttacked(squares, squares[kingSlot[mover ^ 1]], mover)) {
+                        int predecessor = (int) material.index(mover, squares);
+                        if (codes[predecessor] == 0) {
+                            if (lost) {
+                                append(localBuckets, localSizes, checkPlies(ply + 1), predecessor);
+                            } else if (decrementRemaining(predecessor) == 0) {
+                                int lossPlies = Math.max(ply + 1, exitPlies[predecessor] & 0xFF);
+                                append(localBuckets, localSizes, checkPlies(lossPlies), predecessor);
+                            }
+                        }
+                    }
+                    squares[slot] = square;
+                }
+            }
+        }
+        merge(localBuckets, localSizes);
+    }
+
+    /**
+     * Atomically counts down a position's unrefuted moves, returning the new
+     * count.
+     */
+    private int decrementRemaining(int index) {
+        byte count;
+        do {
+            count = (byte) BYTES.getVolatile(remaining, index);
+        } while (!BYTES.compareAndSet(remaining, index, count, (byte) (count - 1)));
+        return count - 1;
+    }
+
+    /**
+     * Decides the positions waiting at a ply that are still open and returns
+     * them.
+     */
+    private int[] commit(int ply) {
+        int[] bucket = buckets[ply];
+        int size = bucketSizes[ply];
+        int[] frontier = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            int index = bucket[i];
+            if (codes[index] == 0) {
+                codes[index] = (byte) (ply + 1);
+                frontier[count++] = index;
+            }
+        }
+        buckets[ply] = null;
+        return Arrays.copyOf(frontier, count);
+    }
+
+    private boolean pendingAfter(int ply) {
+        for (int i = ply + 1; i <= MAX_PLIES; i++) {
+            if (bucketSizes[i] > 0)
+                return true;
+        }
+        return false;
+    }
+
+    // ------------------ Board Helpers ------------------
+
+    // Distinct squares, no pawns on the back ranks, and the side not to move not in check
+    private boolean isLegal(int[] squares, int sideToMove) {
+        long occupied = 0;
+        for (int slot = 0; slot < pieceCount; slot++) {
+            long bit = 1L << squares[slot];
+            if ((occupied & bit) != 0)
+                return false;
+            occupied |= bit;
+            if (Position.typeOf(material.getPiece(slot)) == Position.PAWN
+                    && (Position.rankOf(squares[slot]) == 0 || Position.rankOf(squares[slot]) == 7))
+                return false;
+        }
+        return !isAttacked(squares, squares[kingSlot[sideToMove ^ 1]], sideToMove);
+    }
+
+    // Whether a square is attacked by the pieces of one color; a square of -1 marks a captured piece
+    private boolean isAttacked(int[] squares, int target, int byColor) {
+        long occupied = occupancy(squares, -1);
+        for (int slot = 0; slot < pieceCount; slot++) {
+            int piece = material.getPiece(slot);
+            if (squares[slot] < 0 || Position.colorOf(piece) != byColor)
+                continue;
+            long attacked = Position.typeOf(piece) == Position.PAWN ? Bitboards.pawnAttacks(byColor, squares[slot])
+                    : attacks(piece, squares[slot], occupied);
+            if ((attacked & (1L << target)) != 0)
+                return true;
+        }
+        return false;
+    }
+
+    // Squares occupied by one color, or by both when color is -1
+    private long occupancy(int[] squares, int color) {
+        long occupied = 0;
+        for (int slot = 0; slot < pieceCount; slot++) {
+            if (squares[slot] >= 0 && (color < 0 || Position.colorOf(material.getPiece(slot)) == color))
+                occupied |= 1L << squares[slot];
+        }
+        return occupied;
+    }
+
+    private int slotAt(int[] squares, int square) {
+        for (int slot = 0; slot < pieceCount; slot++) {
+            if (squares[slot] == square)
+                return slot;
+        }
+        return -1;
+    }
+
+    private static long attacks(int piece, int square, long occupied) {
+        return switch (Position.typeOf(piece)) {
+            case Position.KNIGHT -> Bitboards.knightAttacks(square);
+            case Position.BISHOP -> Bitboards.bishopAttacks(square, occupied);
+            case Position.ROOK -> Bitboards.rookAttacks(square, occupied);
+            case Position.QUEEN -> Bitboards.queenAttacks(square, occupied);
+            default -> Bitboards.kingAttacks(square);
+        };
+    }
+
+    // ------------------ Work Helpers ------------------
+
+    private static int checkPlies(int plies) {
+        if (plies > MAX_PLIES)
+            throw new IllegalStateException("Mate longer than " + MAX_PLIES + " plies");
+        return plies;
+    }
+
+    private static void append(int[][] lists, int[] sizes, int ply, int index) {
+        if (lists[ply] == null)
+            lists[ply] = new int[64];
+        else if (sizes[ply] == lists[ply].length)
+            lists[ply] = Arrays.copyOf(lists[ply], sizes[ply] * 2);
+        lists[ply][sizes[ply]++] = index;
+    }
+
+    private synchronized void merge(int[][] lists, int[] sizes) {
+        for (int ply = 0; ply <= MAX_PLIES; ply++) {
+            for (int i = 0; i < sizes[ply]; i++)
+                append(buckets, bucketSizes, ply, lists[ply][i]);
+        }
+    }
+
+    private static void runAll(ExecutorService pool, int chunks, java.util.function.IntConsumer work)
+            throws InterruptedException {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int c = chunk;
+            futures.add(pool.submit(() -> work.accept(c)));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Tablebase generation failed", e.getCause());
+            }
+        }
+    }
+
+    private static String promote(String side, String piece) {
+        return side.replaceFirst("P", piece);
+    }
+
+    // The canonical name with color's pieces and the other side's
+    private static String orient(int color, String own, String other) {
+        return color == Position.WHITE ? TablebaseMaterial.canonicalName(own, other)
+                : TablebaseMaterial.canonicalName(other, own);
+    }
+
+    // ------------------ Command Line ------------------
+
+    /**
+     * Generates tables into a directory:
+     * "java TablebaseGenerator [--threads N] DIR [NAME...]", by default
+     * KQK, KRK, KPK and KBNK. Prints the time taken and how each table's
+     * positions divide into wins, draws and losses for the side to move.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> rest = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length)
+                threads = Integer.parseInt(args[++i]);
+            else
+                rest.add(args[i]);
+        }
+        if (rest.isEmpty()) {
+            System.err.println("Usage: java TablebaseGenerator [--threads N] DIR [NAME...]");
+            System.exit(2);
+        }
+        Path directory = Path.of(rest.get(0));
+        Files.createDirectories(directory);
+        List<String> names = rest.size() > 1 ? rest.subList(1, rest.size()) : List.of("KQK", "KRK", "KPK", "KBNK");
+
+        Bitboards.init();
+        Tablebase tablebase = new Tablebase();
+        TablebaseGenerator generator = new TablebaseGenerator(tablebase, threads, directory);
+        for (String name : names) {
+            long start = System.nanoTime();
+            TablebaseTable table = generator.generate(name);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+
+            long wins = 0;
+            long losses = 0;
+            int longest = 0;
+            long size = table.getMaterial().size();
+            for (long index = 0; index < size; index++) {
+                int code = table.get(index);
+                if (Tablebase.isWin(code))
+                    wins++;
+                else if (Tablebase.isLoss(code))
+                    losses++;
+                longest = Math.max(longest, code);
+            }
+            System.out.printf("%-5s %6d ms  %d bits  wins %d  losses %d  longest mate %d plies%n", name, millis,
+                    table.getBits(), wins, losses, Math.max(longest - 1, 0));
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * TablebaseMaterial describes the pieces of an endgame table, written like
+ * "KQKR": White's pieces then Black's, each side starting with its king and
+ * listing the rest in the order Q, R, B, N, P. Tables are only stored for the
+ * canonical orientation, with the stronger side as White; a position with the
+ * colors the other way round is probed with the board flipped.
+ *
+ * A table position is the side to move plus one square per piece, in the
+ * order of the name, and its index is
+ *
+ *   sideToMove * 64^n + square[0] * 64^(n-1) + ... + square[n-1]
+ *
+ * so a table has 2 * 64^n entries, including impossible ones.
+ */
+public class TablebaseMaterial {
+    public static final int MAX_PIECES = 4;
+
+    private static final String ORDER = "KQRBNP"; // Order of the pieces on each side
+    private static final int[] TYPES = {Position.KING, Position.QUEEN, Position.ROOK, Position.BISHOP,
+            Position.KNIGHT, Position.PAWN};
+    private static final int[] STRENGTH = {0, 9, 5, 3, 3, 1}; // By ORDER, to pick the stronger side
+
+    private final String name;
+    private final int[] pieces; // Piece code of each slot
+
+    private TablebaseMaterial(String name, int[] pieces) {
+        this.name = name;
+        this.pieces = pieces;
+    }
+
+    /**
+     * Parses a name such as "KQKR" or "KPK".
+     *
+     * @throws IllegalArgumentException if the name is not a valid material set
+     */
+    public static TablebaseMaterial parse(String name) {
+        int split = name.indexOf('K', 1);
+        if (!name.startsWith("K") || split < 0)
+            throw new IllegalArgumentException("Material must be like KQKR: " + name);
+        String white = name.substring(0, split);
+        String black = name.substring(split);
+        if (!white.equals(sortSide(white)) || !black.equals(sortSide(black)))
+            throw new IllegalArgumentException("Pieces must be in the order " + ORDER + ": " + name);
+        if (name.length() > MAX_PIECES)
+            throw new IllegalArgumentException("At most " + MAX_PIECES + " pieces: " + name);
+
+        int[] pieces = new int[name.length()];
+        for (int i = 0; i < name.length(); i++) {
+            int type = ORDER.indexOf(name.charAt(i));
+            if (type < 0)
+                throw new IllegalArgumentException("Unknown piece '" + name.charAt(i) + "': " + name);
+            pieces[i] = Position.makePiece(i < split ? Position.WHITE : Position.BLACK, TYPES[type]);
+        }
+        return new TablebaseMaterial(name, pieces);
+    }
+
+    /**
+     * Returns the name for the given pieces with White's and Black's swapped
+     * if needed so the stronger side is White.
+     */
+    public static String canonicalName(String white, String black) {
+        white = sortSide(white);
+        black = sortSide(black);
+        return isCanonical(white, black) ? white + black : black + white;
+    }
+
+    /**
+     * Whether a table with this White and Black side is stored as is, rather
+     * than with the colors swapped.
+     */
+    public static boolean isCanonical(String white, String black) {
+        int difference = strength(white) - strength(black);
+        if (difference != 0)
+            return difference > 0;
+        if (white.length() != black.length())
+            return white.length() > black.length();
+        return compareSides(white, black) <= 0;
+    }
+
+    /**
+     * Returns one side's pieces in a position as "K..." in table order.
+     */
+    public static String side(Position pos, int color) {
+        StringBuilder side = new StringBuilder();
+        for (int i = 0; i < ORDER.length(); i++) {
+            int count = Long.bitCount(pos.getPieces(color, TYPES[i]));
+            for (int j = 0; j < count; j++)
+                side.append(ORDER.charAt(i));
+        }
+        return side.toString();
+    }
+
+    /**
+     * Whether neither side can possibly mate: bare kings, or a single minor
+     * piece. No table is needed for these.
+     */
+    public static boolean isTrivialDraw(String name) {
+        return name.equals("KK") || name.equals("KBK") || name.equals("KNK");
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPieceCount() {
+        return pieces.length;
+    }
+
+    /**
+     * Returns the piece code (see {@link Position}) of a slot.
+     */
+    public int getPiece(int slot) {
+        return pieces[slot];
+    }
+
+    /**
+     * Returns the number of entries in the table, 2 * 64^n.
+     */
+    public long size() {
+        return 2L << (6 * pieces.length);
+    }
+
+    /**
+     * Returns the table index for the side to move and one square per slot.
+     */
+    public long index(int sideToMove, int[] squares) {
+        long index = sideToMove;
+        for (int i = 0; i < pieces.length; i++)
+            index = (index << 6) | squares[i];
+        return index;
+    }
+
+    /**
+     * Fills in the square of each slot from an index, returning the side to
+     * move.
+     */
+    public int decode(long index, int[] squares) {
+        for (int i = pieces.length - 1; i >= 0; i--) {
+            squares[i] = (int) (index & 63);
+            index >>>= 6;
+        }
+        return (int) index;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    // ------------------ Helpers ------------------
+
+    private static String sortSide(String side) {
+        StringBuilder sorted = new StringBuilder();
+        for (int i = 0; i < ORDER.length(); i++) {
+            for (int j = 0; j < side.length(); j++) {
+                if (side.charAt(j) == ORDER.charAt(i))
+                    sorted.append(ORDER.charAt(i));
+            }
+        }
+        return sorted.length() == side.length() ? sorted.toString() : side; // Unknown letters are left for parse
+    }
+
+    private static int strength(String side) {
+        int strength = 0;
+        for (int i = 0; i < side.length(); i++)
+            strength += STRENGTH[Math.max(ORDER.indexOf(side.charAt(i)), 0)];
+        return strength;
+    }
+
+    // Earlier pieces in ORDER are stronger, so compare letter positions
+    private static int compareSides(String a, String b) {
+        for (int i = 0; i < Math.min(a.length(), b.length()); i++) {
+            int difference = ORDER.indexOf(a.charAt(i)) - ORDER.indexOf(b.charAt(i));
+            if (difference != 0)
+                return difference;
+        }
+        return a.length() - b.length();
+    }
+}
@@ -0,0 +1,130 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * TablebaseTable holds the solved values of one endgame (see
+ * {@link TablebaseMaterial}), one code per position:
+ *
+ * - 0: a draw, or a position that cannot occur,
+ * - c > 0: decided, with mate c - 1 plies away with best play. An even
+ *   number of plies means the side to move is mated, an odd number that it
+ *   mates.
+ *
+ * Codes are bit-packed into little-endian 64-bit words using just enough
+ * bits for the longest mate in the table, e.g. 5 bits for KQK. Files are a
+ * 32-byte header (magic "CTB1", version, bits per entry, name length, name)
+ * followed by the words, and are memory-mapped rather than read.
+ */
+public class TablebaseTable {
+    public static final int MAGIC = 0x31425443; // "CTB1" read little-endian
+    public static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 32;
+    private static final int NAME_BYTES = 16;
+
+    private final TablebaseMaterial material;
+    private final int bits;
+    private final long mask;
+    private final LongBuffer words;
+
+    public TablebaseTable(TablebaseMaterial material, int bits, LongBuffer words) {
+        if (bits < 1 || bits > 8 || words.capacity() < (material.size() * bits + 63) / 64)
+            throw new IllegalArgumentException("Table data does not fit " + material);
+        this.material = material;
+        this.bits = bits;
+        this.mask = (1L << bits) - 1;
+        this.words = words;
+    }
+
+    /**
+     * Packs one code per position, each below 256.
+     */
+    public static TablebaseTable pack(TablebaseMaterial material, byte[] codes) {
+        int max = 1;
+        for (byte code : codes)
+            max = Math.max(max, code & 0xFF);
+        int bits = 32 - Integer.numberOfLeadingZeros(max);
+        long[] packed = new long[(int) ((codes.length * (long) bits + 63) / 64)];
+        for (int i = 0; i < codes.length; i++) {
+            long position = (long) i * bits;
+            int word = (int) (position >>> 6);
+            int shift = (int) (position & 63);
+            long value = codes[i] & 0xFF;
+            packed[word] |= value << shift;
+            if (shift + bits > 64)
+                packed[word + 1] |= value >>> (64 - shift);
+        }
+        return new TablebaseTable(material, bits, LongBuffer.wrap(packed));
+    }
+
+    /**
+     * Maps a table file.
+     *
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if it is not a table file
+     */
+    public static TablebaseTable open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.read(header, 0) != HEADER_BYTES || header.getInt(0) != MAGIC)
+                throw new IllegalArgumentException("Not a tablebase file: " + path);
+            if (header.getInt(4) != VERSION)
+                throw new IllegalArgumentException("Unsupported tablebase version " + header.getInt(4) + ": " + path);
+            int bits = header.getInt(8);
+            int nameLength = header.getInt(12);
+            if (nameLength < 2 || nameLength > NAME_BYTES)
+                throw new IllegalArgumentException("Bad tablebase header: " + path);
+            String name = new String(header.array(), 16, nameLength, StandardCharsets.US_ASCII);
+
+            // The mapping stays valid after the channel is closed
+            LongBuffer words = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, channel.size() - HEADER_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            return new TablebaseTable(TablebaseMaterial.parse(name), bits, words);
+        }
+    }
+
+    /**
+     * Writes the table in the format read by {@link #open}.
+     */
+    public void write(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + 8 * words.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+            byte[] name = material.getName().getBytes(StandardCharsets.US_ASCII);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(bits).putInt(name.length).put(name);
+            buffer.position(HEADER_BYTES);
+            for (int i = 0; i < words.capacity(); i++)
+                buffer.putLong(words.get(i));
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+    }
+
+    public TablebaseMaterial getMaterial() {
+        return material;
+    }
+
+    public int getBits() {
+        return bits;
+    }
+
+    /**
+     * Returns the code of the position at an index.
+     */
+    public int get(long index) {
+        long position = index * bits;
+        int word = (int) (position >>> 6);
+        int shift = (int) (position & 63);
+        long value = words.get(word) >>> shift;
+        if (shift + bits > 64)
+            value |= words.get(word + 1) << (64 - shift);
+        return (int) (value & mask);
+    }
+}
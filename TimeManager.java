@@ -0,0 +1,96 @@
+/**
+ * TimeManager turns the limits for a move into two deadlines:
+ *
+ * - the soft limit, checked between iterations: no new iteration starts once
+ *   it has passed. It is shortened while the best move stays the same from
+ *   one iteration to the next, and lengthened when it keeps changing, so
+ *   obvious moves are played quickly and unclear positions get more time,
+ * - the hard limit, checked inside the search every few thousand nodes, at
+ *   which the search stops even in the middle of an iteration. It is capped
+ *   well below the time left so the engine never loses on time.
+ *
+ * With a fixed move time the hard limit is that time and there is no soft
+ * limit. With neither a clock nor a move time there are no deadlines.
+ */
+public class TimeManager {
+    public static final long MOVE_OVERHEAD_MILLIS = 30; // Kept back for communication and GUI lag
+
+    private static final int DEFAULT_MOVES_TO_GO = 30; // Expected moves left in sudden death
+    private static final int MAX_MOVES_TO_GO = 50;
+    private static final int HARD_FACTOR = 5; // Hard limit as a multiple of the soft limit
+    private static final double MAX_FRACTION = 0.75; // Most of the remaining time one move may take
+
+    // Soft limit scale by the number of iterations the best move has been stable
+    private static final double[] STABILITY_SCALE = {1.4, 1.0, 0.8, 0.65, 0.5};
+
+    private final long startTime;
+    private final long softMillis; // 0 for none
+    private final long hardMillis; // 0 for none
+    private int bestMove = Moves.NONE;
+    private int stableIterations;
+
+    /**
+     * Allocates time for the given side, starting the clock at startTime
+     * (from System.nanoTime()).
+     */
+    public TimeManager(SearchLimits limits, int color, long startTime) {
+        this.startTime = startTime;
+        if (limits.getMoveTimeMillis() > 0) {
+            softMillis = 0;
+            hardMillis = limits.getMoveTimeMillis();
+        } else if (limits.hasClock(color)) {
+            long available = Math.max(limits.getTimeMillis(color) - MOVE_OVERHEAD_MILLIS, 1);
+            long increment = limits.getIncrementMillis(color);
+            int movesToGo = limits.getMovesToGo() > 0 ? Math.min(limits.getMovesToGo(), MAX_MOVES_TO_GO)
+                    : DEFAULT_MOVES_TO_GO;
+            long hard = Math.max((long) (available * MAX_FRACTION), 1);
+            long soft = Math.min(available / movesToGo + increment * 3 / 4, hard);
+            softMillis = Math.max(soft, 1);
+            hardMillis = Math.min(soft * HARD_FACTOR, hard);
+        } else {
+            softMillis = 0;
+            hardMillis = 0;
+        }
+    }
+
+    /**
+     * Whether this move is played against the clock, as opposed to a fixed
+     * depth, node count or move time.
+     */
+    public boolean isTimed() {
+        return softMillis != 0;
+    }
+
+    public long getSoftMillis() {
+        return softMillis;
+    }
+
+    public long getHardMillis() {
+        return hardMillis;
+    }
+
+    /**
+     * Returns the System.nanoTime() at which the search must stop, or 0 for
+     * none.
+     */
+    public long getHardDeadline() {
+        return hardMillis != 0 ? startTime + hardMillis * 1_000_000L : 0;
+    }
+
+    /**
+     * Called after each completed iteration with its best move. Returns true
+     * if the soft limit, scaled by how stable the best move has been, has
+     * passed and no further iteration should start.
+     */
+    public boolean iterationComplete(int move, long now) {
+        if (move == bestMove)
+            stableIterations++;
+        else
+            stableIterations = 0;
+        bestMove = move;
+        if (softMillis == 0)
+            return false;
+        double scale = STABILITY_SCALE[Math.min(stableIterations, STABILITY_SCALE.length - 1)];
+        return now - startTime >= (long) (softMillis * scale * 1_000_000L);
+    }
+}
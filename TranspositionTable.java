@@ -0,0 +1,199 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TranspositionTable remembers search results by position key: the depth
+ * searched, the score and whether it is exact or only a bound, and the best
+ * move. The search uses it to cut off positions it has already searched and
+ * to try the best move from an earlier iteration first.
+ *
+ * Each bucket holds two entries. The first keeps the deepest result and is
+ * only overwritten by a deeper one or by a result from a newer search; the
+ * second always takes whatever the first one refused, so recent results are
+ * never lost.
+ *
+ * The table is shared by search threads without locks, in the same way as
+ * {@link PerftHashTable}: every entry is two longs, the data word and the
+ * key XORed with the data, and a torn entry fails the key check.
+ */
+public class TranspositionTable {
+    public static final int EXACT = 1; // Score is the true value
+    public static final int LOWER = 2; // Score is at least this (fail high)
+    public static final int UPPER = 3; // Score is at most this (fail low)
+
+    private static final int ENTRY_LONGS = 2;
+    private static final int BUCKET_ENTRIES = 2;
+    private static final int BUCKET_BYTES = ENTRY_LONGS * BUCKET_ENTRIES * 8;
+    private static final int FILL_SAMPLE = 1000; // Buckets sampled by getFillRate
+
+    // Data word layout
+    private static final int SCORE_SHIFT = 32; // bits 32-47, signed
+    private static final int DEPTH_SHIFT = 48; // bits 48-55
+    private static final int BOUND_SHIFT = 56; // bits 56-57
+    private static final int AGE_SHIFT = 58; // bits 58-63
+    private static final int AGE_MASK = 0x3F;
+
+    private long[] table; // [4i] = key ^ data, [4i + 1] = data, then the second entry
+    private int mask; // Number of buckets - 1
+    private int age; // Search generation, bumped by newSearch
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Creates a table using at most the given number of megabytes, rounded
+     * down to a power-of-two bucket count.
+     */
+    public TranspositionTable(int megabytes) {
+        resize(megabytes);
+    }
+
+    /**
+     * Reallocates the table with a new size. All entries are lost.
+     */
+    public void resize(int megabytes) {
+        if (megabytes < 1)
+            throw new IllegalArgumentException("Hash size must be at least 1 MB");
+        long buckets = Long.highestOneBit((long) megabytes * 1024 * 1024 / BUCKET_BYTES);
+        buckets = Math.min(buckets, 1L << 28); // Java arrays are int-indexed
+        table = null; // Let the old table be collected before allocating the new one
+        table = new long[(int) buckets * ENTRY_LONGS * BUCKET_ENTRIES];
+        mask = (int) buckets - 1;
+        clear();
+    }
+
+    /**
+     * Empties the table and its statistics, e.g. between games.
+     */
+    public void clear() {
+        Arrays.fill(table, 0L);
+        age = 0;
+        probes.reset();
+        hits.reset();
+    }
+
+    /**
+     * Marks the start of a new search, so entries from earlier searches are
+     * replaced first, and restarts the statistics.
+     */
+    public void newSearch() {
+        age = (age + 1) & AGE_MASK;
+        probes.reset();
+        hits.reset();
+    }
+
+    /**
+     * Returns the data word stored for a position key, or 0 if there is none.
+     * Use the static accessors to unpack it.
+     */
+    public long probe(long key) {
+        probes.increment();
+        int index = bucketIndex(key);
+        for (int i = 0; i < BUCKET_ENTRIES; i++, index += ENTRY_LONGS) {
+            long data = table[index + 1];
+            if (data != 0 && (table[index] ^ data) == key) {
+                hits.increment();
+                return data;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Stores a search result. A result for a position already in the bucket
+     * replaces it; otherwise the deep entry is replaced if the new result is
+     * at least as deep or the old one is from an earlier search, and the
+     * second entry is replaced if not.
+     */
+    public void store(long key, int depth, int score, int bound, int move) {
+        int index = bucketIndex(key);
+        int deep = index;
+        int recent = index + ENTRY_LONGS;
+
+        int target;
+        if ((table[deep] ^ table[deep + 1]) == key) {
+            target = deep;
+        } else if ((table[recent] ^ table[recent + 1]) == key) {
+            target = recent;
+        } else {
+            long data = table[deep + 1];
+            target = data == 0 || age(data) != age || depth(data) <= depth ? deep : recent;
+        }
+        long old = table[target + 1];
+
+        // Keep the old best move if this result has none (e.g. a fail low)
+        if (move == Moves.NONE && old != 0 && (table[target] ^ old) == key)
+            move = move(old);
+
+        long data = (move & 0xFFFFFFFFL)
+                | ((long) (score & 0xFFFF) << SCORE_SHIFT)
+                | ((long) depth << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) age << AGE_SHIFT);
+        table[target] = key ^ data;
+        table[target + 1] = data;
+    }
+
+    private int bucketIndex(long key) {
+        return ((int) key & mask) * ENTRY_LONGS * BUCKET_ENTRIES;
+    }
+
+    // ------------------ Entry Accessors ------------------
+
+    public static int move(long data) {
+        return (int) data;
+    }
+
+    public static int score(long data) {
+        return (short) (data >>> SCORE_SHIFT);
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    public static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & 0x3;
+    }
+
+    private static int age(long data) {
+        return (int) (data >>> AGE_SHIFT) & AGE_MASK;
+    }
+
+    // ------------------ Statistics ------------------
+
+    public long getProbes() {
+        return probes.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the fraction of the current search's probes that found their
+     * entry.
+     */
+    public double getHitRate() {
+        long total = probes.sum();
+        return total > 0 ? (double) hits.sum() / total : 0.0;
+    }
+
+    /**
+     * Estimates the fraction of entries used by the current search, from a
+     * sample at the start of the table.
+     */
+    public double getFillRate() {
+        int buckets = Math.min(FILL_SAMPLE, mask + 1);
+        int used = 0;
+        for (int i = 0; i < buckets * BUCKET_ENTRIES; i++) {
+            long data = table[i * ENTRY_LONGS + 1];
+            if (data != 0 && age(data) == age)
+                used++;
+        }
+        return (double) used / (buckets * BUCKET_ENTRIES);
+    }
+
+    public int getSizeMegabytes() {
+        return (int) ((long) table.length * 8 / (1024 * 1024));
+    }
+}
@@ -0,0 +1,332 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * UCI runs the engine without the GUI, speaking the Universal Chess Interface
+ * on standard input and output so it can play under tournament managers and
+ * graphical interfaces such as cutechess or Arena. Supported commands:
+ *
+ * - uci, isready, ucinewgame, quit,
+ * - setoption name Hash|Threads value N,
+ * - position startpos|fen FEN [moves M...],
+ * - go [depth N] [movetime MS] [nodes N] [wtime MS] [btime MS] [winc MS]
+ *   [binc MS] [movestogo N] [infinite],
+ * - stop.
+ *
+ * Commands are read on the calling thread while each search runs on its own
+ * thread, so "stop" and "isready" are answered during a search. A stop sets
+ * the search's flag, which is checked at every node, so the best move follows
+ * within milliseconds. Progress is streamed as "info" lines after every
+ * iteration.
+ */
+public class UCI {
+    private static final String NAME = "Chess";
+    private static final String AUTHOR = "the Chess contributors";
+    private static final int MAX_HASH_MB = 4096;
+    private static final int MAX_THREADS = 256;
+
+    private final AI ai;
+    private final PrintStream out;
+    private Position position = Position.startPosition();
+    private Thread searchThread; // Null before the first search
+    private volatile boolean stopRequested;
+    private final Object stopSignal = new Object(); // Notified on stop, for infinite searches
+
+    // Principal variation of the last completed iteration, for the ponder move
+    private final int[] pv = new int[Search.MAX_PLY];
+    private int pvLength;
+
+    public UCI(AI ai, PrintStream out) {
+        this.ai = ai;
+        this.out = out;
+        ai.setListener(this::reportIteration);
+    }
+
+    /**
+     * Reads and executes commands until "quit" or the end of the input.
+     */
+    public void run(BufferedReader in) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (!execute(line.trim()))
+                return;
+        }
+        finishSearch();
+    }
+
+    /**
+     * Executes one command line, returning false on "quit".
+     */
+    public boolean execute(String line) {
+        String[] tokens = line.split("\\s+");
+        try {
+            switch (tokens[0]) {
+                case "uci" -> identify();
+                case "isready" -> send("readyok");
+                case "ucinewgame" -> {
+                    finishSearch();
+                    ai.newGame();
+                    position = Position.startPosition();
+                }
+                case "setoption" -> setOption(tokens);
+                case "position" -> setPosition(tokens);
+                case "go" -> go(tokens);
+                case "stop" -> stopSearch();
+                case "quit" -> {
+                    finishSearch();
+                    return false;
+                }
+                case "" -> { } // Blank line
+                default -> send("info string Unknown command: " + line);
+            }
+        } catch (IllegalArgumentException e) {
+            send("info string " + e.getMessage());
+        }
+        return true;
+    }
+
+    // ------------------ Commands ------------------
+
+    private void identify() {
+        send("id name " + NAME);
+        send("id author " + AUTHOR);
+        send("option name Hash type spin default " + Search.DEFAULT_HASH_MB + " min 1 max " + MAX_HASH_MB);
+        send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+        send("uciok");
+    }
+
+    // setoption name <id> value <x>
+    private void setOption(String[] tokens) {
+        String name = tokenAfter(tokens, "name");
+        String value = tokenAfter(tokens, "value");
+        if (name == null || value == null)
+            throw new IllegalArgumentException("Expected setoption name <id> value <x>");
+        finishSearch();
+        if (name.equalsIgnoreCase("Hash"))
+            ai.setHashSize(parseInt(value, 1, MAX_HASH_MB));
+        else if (name.equalsIgnoreCase("Threads"))
+            ai.setThreads(parseInt(value, 1, MAX_THREADS));
+        else
+            throw new IllegalArgumentException("Unknown option: " + name);
+    }
+
+    // position startpos|fen <fen> [moves <m>...]. The old position is kept if any part is invalid.
+    private void setPosition(String[] tokens) {
+        int i = 1;
+        Position next;
+        if (tokens.length > 1 && tokens[1].equals("startpos")) {
+            next = Position.startPosition();
+            i = 2;
+        } else if (tokens.length > 1 && tokens[1].equals("fen")) {
+            StringBuilder fen = new StringBuilder();
+            for (i = 2; i < tokens.length && !tokens[i].equals("moves"); i++)
+                fen.append(tokens[i]).append(' ');
+            next = Position.fromFEN(fen.toString().trim());
+        } else {
+            throw new IllegalArgumentException("Expected position startpos or position fen");
+        }
+
+        if (i < tokens.length && tokens[i].equals("moves")) {
+            for (i++; i < tokens.length; i++)
+                next.makeMove(parseMove(next, tokens[i]));
+        }
+        position = next;
+    }
+
+    private void go(String[] tokens) {
+        int depth = 0;
+        int movesToGo = 0;
+        long moveTime = 0;
+        long nodes = 0;
+        long[] time = new long[2];
+        long[] increment = new long[2];
+        boolean infinite = false;
+        // A clock at zero or below still means playing on the clock, as fast as possible
+        for (int i = 1; i < tokens.length; i++) {
+            switch (tokens[i]) {
+                case "depth" -> depth = parseInt(value(tokens, ++i), 1, Search.MAX_PLY - 1);
+                case "movetime" -> moveTime = parseLong(value(tokens, ++i));
+                case "nodes" -> nodes = parseLong(value(tokens, ++i));
+                case "wtime" -> time[Position.WHITE] = Math.max(parseLong(value(tokens, ++i)), 1);
+                case "btime" -> time[Position.BLACK] = Math.max(parseLong(value(tokens, ++i)), 1);
+                case "winc" -> increment[Position.WHITE] = parseLong(value(tokens, ++i));
+                case "binc" -> increment[Position.BLACK] = parseLong(value(tokens, ++i));
+                case "movestogo" -> movesToGo = parseInt(value(tokens, ++i), 0, Integer.MAX_VALUE);
+                case "infinite" -> infinite = true;
+                default -> { } // ponder, searchmoves and mate are not supported
+            }
+        }
+        SearchLimits limits = infinite ? new SearchLimits(0, 0, 0)
+                : new SearchLimits(depth, moveTime, nodes, time[0], time[1], increment[0], increment[1], movesToGo);
+
+        finishSearch();
+        Position root = new Position(position); // Later position commands must not touch the search's copy
+        boolean waitForStop = infinite;
+        stopRequested = false;
+        pvLength = 0;
+        searchThread = new Thread(() -> runSearch(root, limits, waitForStop), "uci-search");
+        searchThread.start();
+    }
+
+    // ------------------ Search thread ------------------
+
+    private void runSearch(Position root, SearchLimits limits, boolean waitForStop) {
+        int move = ai.chooseMove(root, limits);
+
+        // An infinite search may only report its move once told to stop
+        if (waitForStop) {
+            synchronized (stopSignal) {
+                while (!stopRequested) {
+                    try {
+                        stopSignal.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }
+
+        String line = "bestmove " + Moves.toUCI(move);
+        if (pvLength > 1 && pv[0] == move)
+            line += " ponder " + Moves.toUCI(pv[1]);
+        send(line);
+    }
+
+    private void reportIteration(int depth, int score, long nodes, long millis, int[] pv, int pvLength) {
+        // A stop that came before the search cleared its flags is repeated here
+        if (stopRequested)
+            ai.stop();
+
+        System.arraycopy(pv, 0, this.pv, 0, pvLength);
+        this.pvLength = pvLength;
+        StringBuilder line = new StringBuilder("info");
+        line.append(" depth ").append(depth)
+                .append(" score ").append(AI.formatScore(score))
+                .append(" nodes ").append(nodes)
+                .append(" nps ").append(millis > 0 ? nodes * 1000 / millis : 0)
+                .append(" time ").append(millis)
+                .append(" hashfull ").append(ai.getHashFull())
+                .append(" pv");
+        for (int i = 0; i < pvLength; i++)
+            line.append(' ').append(Moves.toUCI(pv[i]));
+        send(line.toString());
+    }
+
+    /**
+     * Asks the running search, if any, to stop. Its best move is printed by
+     * the search thread.
+     */
+    private void stopSearch() {
+        stopRequested = true;
+        ai.stop();
+        synchronized (stopSignal) {
+            stopSignal.notifyAll();
+        }
+    }
+
+    /**
+     * Stops the running search, if any, and waits for it to print its move.
+     */
+    private void finishSearch() {
+        if (searchThread == null)
+            return;
+        stopSearch();
+        try {
+            searchThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        searchThread = null;
+    }
+
+    // ------------------ Helpers ------------------
+
+    // Lines come from both threads, so each is written whole
+    private synchronized void send(String line) {
+        out.println(line);
+        out.flush();
+    }
+
+    /**
+     * Finds the legal move written in UCI notation, e.g. "e2e4" or "e7e8q".
+     *
+     * @throws IllegalArgumentException if no legal move matches
+     */
+    public static int parseMove(Position pos, String text) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegal(pos, moves);
+        for (int i = 0; i < count; i++) {
+            if (Moves.toUCI(moves[i]).equals(text))
+                return moves[i];
+        }
+        throw new IllegalArgumentException("Illegal move: " + text);
+    }
+
+    // The words after a keyword, up to the next keyword, so option names may contain spaces
+    private static String tokenAfter(String[] tokens, String keyword) {
+        StringBuilder text = new StringBuilder();
+        boolean found = false;
+        for (String token : tokens) {
+            if (found && (token.equals("name") || token.equals("value")))
+                break;
+            if (found)
+                text.append(text.length() > 0 ? " " : "").append(token);
+            found |= token.equals(keyword);
+        }
+        return found && text.length() > 0 ? text.toString() : null;
+    }
+
+    private static String value(String[] tokens, int i) {
+        if (i >= tokens.length)
+            throw new IllegalArgumentException("Missing value after " + tokens[i - 1]);
+        return tokens[i];
+    }
+
+    private static int parseInt(String text, int min, int max) {
+        long value = parseLong(text);
+        if (value < min || value > max)
+            throw new IllegalArgumentException("Value must be between " + min + " and " + max + ": " + text);
+        return (int) value;
+    }
+
+    private static long parseLong(String text) {
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + text);
+        }
+    }
+
+    /**
+     * Runs the engine on standard input and output. Takes the same options as
+     * Game: "--weights FILE", "--nnue FILE", "--book FILE" and
+     * "--tablebases DIR".
+     */
+    public static void main(String[] args) throws IOException {
+        Bitboards.init();
+        PolyglotBook book = null;
+        Tablebase tablebase = null;
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals("--weights"))
+                Evaluation.loadWeights(Path.of(args[i + 1]));
+            else if (args[i].equals("--nnue"))
+                AI.setNetwork(NnueNetwork.load(Path.of(args[i + 1])));
+            else if (args[i].equals("--book"))
+                book = PolyglotBook.open(Path.of(args[i + 1]));
+            else if (args[i].equals("--tablebases"))
+                tablebase = Tablebase.open(Path.of(args[i + 1]));
+        }
+
+        AI ai = new AI("Hard"); // Uses the network when there is one; the GUI's limits replace the difficulty's
+        ai.setBook(book);
+        ai.setTablebase(tablebase);
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        new UCI(ai, System.out).run(in); // Search helper threads are daemons and do not keep the JVM alive
+    }
+}
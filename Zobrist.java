@@ -0,0 +1,72 @@
+/**
+ * Zobrist holds the random 64-bit keys used to hash positions: one per piece
+ * on each square, one for the side to move, one per castling-rights
+ * combination and one per en passant file. A position's key is the XOR of the
+ * keys of everything in it. The pawn key, used by {@link PawnHashTable}, is the
+ * XOR of the pawn keys alone.
+ */
+public final class Zobrist {
+    public static final long[][] PIECE_SQUARE = new long[12][64];
+    public static final long SIDE; // XORed in when black is to move
+    public static final long[] CASTLING = new long[16]; // Indexed by the castling rights bitmask
+    public static final long[] EN_PASSANT_FILE = new long[8];
+
+    private static long seed = 0x9E3779B97F4A7C15L; // Fixed seed so keys are the same on every run
+
+    static {
+        for (int piece = 0; piece < 12; piece++)
+            for (int sq = 0; sq < 64; sq++)
+                PIECE_SQUARE[piece][sq] = nextRandom();
+        SIDE = nextRandom();
+        for (int rights = 0; rights < 16; rights++)
+            CASTLING[rights] = nextRandom();
+        for (int file = 0; file < 8; file++)
+            EN_PASSANT_FILE[file] = nextRandom();
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Computes the key of a position from scratch.
+     */
+    public static long compute(Position pos) {
+        long key = 0L;
+        for (int piece = 0; piece < 12; piece++) {
+            long bits = pos.getPieces(piece);
+            while (bits != 0) {
+                key ^= PIECE_SQUARE[piece][Long.numberOfTrailingZeros(bits)];
+                bits &= bits - 1;
+            }
+        }
+        if (pos.getSideToMove() == Position.BLACK)
+            key ^= SIDE;
+        key ^= CASTLING[pos.getCastlingRights()];
+        if (pos.getEnPassantTargetSquare() != Position.NO_SQUARE)
+            key ^= EN_PASSANT_FILE[Position.fileOf(pos.getEnPassantTargetSquare())];
+        return key;
+    }
+
+    /**
+     * Computes the pawn key of a position from scratch.
+     */
+    public static long computePawnKey(Position pos) {
+        long key = 0L;
+        for (int piece = Position.WHITE_PAWN; piece <= Position.BLACK_PAWN; piece += Position.BLACK_PAWN) {
+            long bits = pos.getPieces(piece);
+            while (bits != 0) {
+                key ^= PIECE_SQUARE[piece][Long.numberOfTrailingZeros(bits)];
+                bits &= bits - 1;
+            }
+        }
+        return key;
+    }
+
+    private static long nextRandom() {
+        // splitmix64
+        long z = (seed += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}